@@ -0,0 +1,59 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.benchmark;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
+import at.tugraz.ist.ase.knowledgebases.app.generator.FeatureModelGenerator;
+import com.google.common.io.Files;
+import lombok.experimental.UtilityClass;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The feature models used by the benchmarks.
+ * Bundled models are read from the directory given by the system property {@code kbstatistics.fms},
+ * by default the test resources of KBStatistics.
+ */
+@UtilityClass
+public class BenchmarkModels {
+
+    public static final String FMS_DIR = System.getProperty("kbstatistics.fms", "../src/test/resources/fms");
+
+    public static File bundled(String fileName) {
+        return new File(FMS_DIR, fileName);
+    }
+
+    /**
+     * Generates a synthetic feature model with the given number of features in a temporary SXFM file.
+     */
+    public static File synthetic(int numFeatures) throws IOException {
+        File file = File.createTempFile("synthetic_" + numFeatures + "_", ".sxfm");
+        file.deleteOnExit();
+
+        FeatureModelGenerator.builder()
+                .numFeatures(numFeatures)
+                .build()
+                .writeSXFM(file.toPath());
+        return file;
+    }
+
+    public static FeatureModelParser parserOf(File file) {
+        FMFormat fmFormat = FMFormat.getFMFormat(Files.getFileExtension(file.getName()));
+        return FMParserFactory.getInstance().getParser(fmFormat);
+    }
+
+    public static FeatureModel parse(File file) throws FeatureModelParserException {
+        return parserOf(file).parse(file);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.benchmark;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.knowledgebases.fm.FMKB;
+import org.chocosolver.solver.Solver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the {@link FMKB} of a feature model and checking its consistency,
+ * for the bundled models and for synthetic models of increasing size.
+ * A model name "synthetic-N" stands for a generated model with N features.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FMKBBenchmark {
+
+    @Param({"smartwatch.sxfm", "ubuntu.splx", "synthetic-1000", "synthetic-10000"})
+    public String model;
+
+    private FeatureModel fm;
+    private Solver solver;
+
+    @Setup
+    public void setup() throws IOException, FeatureModelParserException {
+        File file = model.startsWith("synthetic-")
+                ? BenchmarkModels.synthetic(Integer.parseInt(model.substring("synthetic-".length())))
+                : BenchmarkModels.bundled(model);
+
+        fm = BenchmarkModels.parse(file);
+        solver = new FMKB(fm, false).getModelKB().getSolver();
+    }
+
+    @Benchmark
+    public FMKB build() {
+        return new FMKB(fm, false);
+    }
+
+    @Benchmark
+    public boolean solve() {
+        boolean consistent = solver.solve();
+        solver.reset();
+        return consistent;
+    }
+}
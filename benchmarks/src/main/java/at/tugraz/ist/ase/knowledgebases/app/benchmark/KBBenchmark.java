@@ -0,0 +1,52 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.benchmark;
+
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import at.tugraz.ist.ase.knowledgebases.pc.PCKB;
+import at.tugraz.ist.ase.knowledgebases.renault.RenaultKB;
+import org.chocosolver.solver.Solver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the PC and Renault knowledge bases and checking their consistency.
+ * Renault is heavy, run it with a single-shot mode, e.g., {@code -bm ss -p kb=Renault}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KBBenchmark {
+
+    @Param({"PC", "Renault"})
+    public String kb;
+
+    private Solver solver;
+
+    @Setup
+    public void setup() {
+        solver = build().getModelKB().getSolver();
+    }
+
+    @Benchmark
+    public KB build() {
+        return kb.equals("PC") ? new PCKB(false) : new RenaultKB(false);
+    }
+
+    @Benchmark
+    public boolean solve() {
+        boolean consistent = solver.solve();
+        solver.reset();
+        return consistent;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.benchmark;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing each supported feature model format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"bamboobike_splot.sxfm", "ubuntu.splx", "bamboobike_featureide.xml",
+            "bamboobike.gfm.json", "bamboobike.xmi", "bamboobike.fm4conf"})
+    public String fileName;
+
+    private File file;
+    private FeatureModelParser parser;
+
+    @Setup
+    public void setup() {
+        file = BenchmarkModels.bundled(fileName);
+        parser = BenchmarkModels.parserOf(file);
+    }
+
+    @Benchmark
+    public FeatureModel parse() throws FeatureModelParserException {
+        return parser.parse(file);
+    }
+}
@@ -8,26 +8,52 @@
 
 package at.tugraz.ist.ase.knowledgebases.app;
 
-import at.tugraz.ist.ase.fm.core.FeatureModel;
-import at.tugraz.ist.ase.fm.core.RelationshipType;
-import at.tugraz.ist.ase.fm.parser.FMFormat;
-import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
 import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
-import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
+import at.tugraz.ist.ase.knowledgebases.app.cache.StatisticsCache;
 import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
-import at.tugraz.ist.ase.knowledgebases.core.KB;
-import at.tugraz.ist.ase.knowledgebases.fm.FMKB;
-import at.tugraz.ist.ase.knowledgebases.pc.PCKB;
-import at.tugraz.ist.ase.knowledgebases.renault.RenaultKB;
-import com.google.common.io.Files;
+import at.tugraz.ist.ase.knowledgebases.app.compare.CorpusComparison;
+import at.tugraz.ist.ase.knowledgebases.app.core.MemoryBudget;
+import at.tugraz.ist.ase.knowledgebases.app.core.OrderedStatisticsPipeline;
+import at.tugraz.ist.ase.knowledgebases.app.core.Phase;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTimings;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.core.TimingReport;
+import at.tugraz.ist.ase.knowledgebases.app.io.ArchiveReader;
+import at.tugraz.ist.ase.knowledgebases.app.io.CheckpointJournal;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelSource;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelWalker;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.sample.FeatureModelSampler;
+import at.tugraz.ist.ase.knowledgebases.app.sample.Sample;
+import at.tugraz.ist.ase.knowledgebases.app.sample.SampleEstimator;
+import at.tugraz.ist.ase.knowledgebases.app.schedule.CostEstimator;
+import at.tugraz.ist.ase.knowledgebases.app.server.StatisticsServer;
+import at.tugraz.ist.ase.knowledgebases.app.shard.Shard;
+import at.tugraz.ist.ase.knowledgebases.app.shard.ShardMerger;
+import at.tugraz.ist.ase.knowledgebases.app.store.StatisticsQuery;
+import at.tugraz.ist.ase.knowledgebases.app.store.StatisticsStore;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseRegistry;
+import at.tugraz.ist.ase.knowledgebases.app.metrics.MetricsExporter;
+import at.tugraz.ist.ase.knowledgebases.app.metrics.RunMetrics;
 import lombok.Cleanup;
 import lombok.NonNull;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Objects;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -82,6 +108,13 @@ public class KBStatistics {
             (2) PC and Renault from "https://www.itu.dk/research/cla/externals/clib/\"""";
     static String usage = "Usage: java -jar kbstatistics.jar [options]";
 
+    /**
+     * The history of the costs of the knowledge bases in the cache directory, see {@link CostEstimator}.
+     */
+    static final String COST_HISTORY_FILE = "costs.tsv";
+    private static final String LARGEST_FIRST_ARCHIVES = "-largest-first can't process archives, since it lists all feature models "
+            + "before processing them; unpack them or leave out -largest-first.";
+
     public static void main(String[] args) {
 
         KBStatistics_CmdLineOptions cmdLineOptions = new KBStatistics_CmdLineOptions(welcome, programTitle, subtitle, usage);
@@ -92,18 +125,110 @@ public class KBStatistics {
             System.exit(0);
         }
 
+        if (cmdLineOptions.isListKBs()) {
+            System.out.print(KnowledgeBaseRegistry.getDefault().toListing());
+            System.exit(0);
+        }
+
         cmdLineOptions.printWelcome();
 
+        if (cmdLineOptions.getServerPort() != null) {
+            try {
+                StatisticsServer server = new StatisticsServer(cmdLineOptions);
+                server.warmUp(cmdLineOptions.getWarmUp());
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (cmdLineOptions.getCompare() != null) {
+            try {
+                new CorpusComparison(cmdLineOptions).compare();
+            } catch (IOException | FeatureModelParserException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            System.out.println("\nDONE.");
+            return;
+        }
+
+        if (cmdLineOptions.getQuery() != null) {
+            try {
+                query(cmdLineOptions);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            System.out.println("\nDONE.");
+            return;
+        }
+
+        if (cmdLineOptions.getMerge() != null) {
+            try {
+                new ShardMerger(cmdLineOptions.getMerge().stream().map(Paths::get).toList())
+                        .merge(Paths.get(cmdLineOptions.getOutFile()));
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            System.out.println("\nDONE.");
+            return;
+        }
+
         KBStatistics kbStatistics = new KBStatistics(cmdLineOptions);
         try {
             kbStatistics.calculate();
         } catch (IOException | FeatureModelParserException e) {
             e.printStackTrace();
+            System.exit(1);
         }
         System.out.println("\nDONE.");
+        System.exit(kbStatistics.numFailed > 0 ? 1 : 0);
+    }
+
+    /**
+     * Runs the query of the options on their statistics store and saves the results to the output file.
+     */
+    static int query(@NonNull KBStatistics_CmdLineOptions options) throws IOException {
+        StatisticsQuery query = new StatisticsQuery(options.getWhere(), options.getSelect());
+        @Cleanup StatisticsStore store = StatisticsStore.open(Paths.get(options.getQuery()));
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = query.run(store);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        @Cleanup BufferedWriter out = Files.newBufferedWriter(Paths.get(options.getOutFile()), StandardCharsets.UTF_8);
+        StatisticsQuery.write(out, options.getFormat(),
+                query.getColumns().isEmpty() ? store.getColumns() : query.getColumns(), results);
+
+        System.out.println("\n" + results.size() + " of " + store.size() + " knowledge bases match, queried in "
+                + elapsedMillis + " ms");
+        return results.size();
     }
 
     KBStatistics_CmdLineOptions options;
+    StatisticsCalculator calculator;
+    MemoryBudget budget;
+    RunMetrics metrics;
+    TimingReport timingReport;
+    /**
+     * The shard of the knowledge bases to process, null for all.
+     */
+    Shard shard;
+    /**
+     * The costs of the knowledge bases of a largest-first run, null otherwise.
+     */
+    CostEstimator costs;
+    /**
+     * The sampler and the estimates of a sample run, null for a full run.
+     */
+    FeatureModelSampler sampler;
+    SampleEstimator estimator;
+    int numSucceeded;
+    int numFailed;
 
     /**
      * A constructor with a folder's path which stores feature model's files,
@@ -114,94 +239,198 @@ public class KBStatistics {
     }
 
     public void calculate() throws IOException, FeatureModelParserException {
-        @Cleanup BufferedWriter writer = new BufferedWriter(new FileWriter(options.getOutFile()));
+        Path outFile = Paths.get(options.getOutFile());
+        @Cleanup CheckpointJournal journal = new CheckpointJournal(CheckpointJournal.journalOf(outFile), options.isResume());
+        if (options.isResume()) {
+            // drop a partially written record after the last completed one
+            try (FileChannel channel = FileChannel.open(outFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(journal.getOffset());
+            }
+            System.out.println("Resuming after " + journal.getNumCompleted() + " completed knowledge bases...");
+        }
+        @Cleanup FileOutputStream out = new FileOutputStream(outFile.toFile(), options.isResume());
+        @Cleanup StatisticsWriter writer = options.getFormat().createWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), options.getOutputGroups(), journal.getOffset() > 0);
+        @Cleanup StatisticsWriter store = options.getStore() != null
+                ? new StatisticsStore(Paths.get(options.getStore()), OutputFormat.enabledGroups(options.getOutputGroups())) : null;
+        timingReport = new TimingReport();
+        // the summary covers the records of the interrupted run as well
+        numFailed = journal.getNumFailed();
+        numSucceeded = journal.getNumCompleted() - numFailed;
+        calculator = StatisticsCalculator.of(options);
+        budget = options.getHeapBudget() > 0 ? new MemoryBudget(options.getHeapBudget() << 20) : null;
+        metrics = new RunMetrics(calculator.getCache());
+        @Cleanup MetricsExporter exporter = new MetricsExporter(metrics,
+                options.getMetricsFile() != null ? Paths.get(options.getMetricsFile()) : null, options.getMetricsInterval());
+        costs = options.isLargestFirst() && options.getThreads() > 1
+                ? new CostEstimator(options.getCacheDir() == null || options.isNoCache() ? null
+                        : Paths.get(options.getCacheDir()).resolve(COST_HISTORY_FILE)) : null;
+        // the pre-pass of -largest-first keeps the sources of all knowledge bases, which would be the unpacked archives,
+        // so an archive of -fm is rejected before the run, and the archives of -fm-dir are skipped in submit
+        checkArgument(costs == null || options.getFm() == null || !ArchiveReader.isArchive(Paths.get(options.getFm())),
+                LARGEST_FIRST_ARCHIVES);
+        @Cleanup OrderedStatisticsPipeline pipeline = new OrderedStatisticsPipeline(options.getThreads(), costs != null,
+                record -> {
+                    saveStatistics(writer, record);
+                    if (store != null) {
+                        store.write(record);
+                    }
+                    if (estimator != null) {
+                        estimator.add(record);
+                    }
+                    if (costs != null) {
+                        costs.record(record);
+                    }
+                    journal.record(record.getCounter(), record.getInput(), record.isFailed(), out.getChannel().position());
+                });
+        shard = options.getShard();
+        if (shard != null) {
+            System.out.println("Processing shard " + shard + "...");
+        }
+        Sample sample = options.getSample();
+        if (sample != null) {
+            checkArgument(options.getFmDir() != null && options.getKb() == null && options.getFm() == null && shard == null,
+                    "-sample draws from the feature models of -fm-dir only, without -kb, -fm or -shard.");
+            System.out.println("Processing a sample of " + sample + " feature models...");
+        }
+        estimator = sample != null ? new SampleEstimator(OutputFormat.enabledGroups(options.getOutputGroups())) : null;
+        long start = System.nanoTime();
         // check the type of knowledge base
         int counter = 0;
 
         if (options.getKb() != null) {
             for (String nameKb : options.getKb()) {
-                KB kb = null;
-                if (nameKb.equals("PC")) { // if pc, then calculate the statistics of pc
-                    System.out.println("\nCalculating statistics for PC...");
-                    kb = new PCKB(false);
-                } else if (nameKb.equals("Renault")) { // if Renault, then calculate the statistics of Renault
-                    System.out.println("\nCalculating statistics for Renault...");
-                    kb = new RenaultKB(false);
+                final int kbCounter = ++counter;
+                if (shard != null && !shard.contains(nameKb)) {
+                    continue;
+                }
+                metrics.discovered();
+                if (!journal.isCompleted(kbCounter, nameKb)) {
+                    metrics.submitted();
+                    long estimatedBytes = calculator.estimateMemory(nameKb);
+                    pipeline.submit(costOf(nameKb, estimatedBytes),
+                            () -> admit(estimatedBytes, calculator.kbTask(kbCounter, nameKb)));
                 }
-
-                checkArgument(kb != null, "The knowledge base is not supported.");
-
-                System.out.println("Saving statistics to " + options.getOutFile() + "...");
-                saveStatistics(writer, ++counter, kb);
-
-                System.out.println("Done - " + nameKb);
             }
         }
 
         if (options.getFm() != null) {
-            File file = new File(options.getFm());
-
-            processFM(writer, ++counter, file);
+            // a feature model file, or an archive of feature models
+            Path fm = Paths.get(options.getFm());
+            Path fmDir = fm.getParent() != null ? fm.getParent() : Paths.get("");
+            AtomicInteger fmCounter = new AtomicInteger(counter);
+            FeatureModelWalker.visit(fm,
+                    source -> submit(pipeline, journal, fmCounter.incrementAndGet(), fmDir, source));
+            counter = fmCounter.get();
         }
 
         if (options.getFmDir() != null) {
-            // if a folder, then calculate the statistics of all feature models in the folder
-            File folder = new File(options.getFmDir());
-
-            for (final File file : Objects.requireNonNull(folder.listFiles())) {
-                // TODO - check if the file is a feature model
-                processFM(writer, ++counter, file);
+            // if a folder, then calculate the statistics of all feature models in the folder and its subfolders
+            // files are submitted while the folder is walked
+            Path folder = Paths.get(options.getFmDir());
+            AtomicInteger dirCounter = new AtomicInteger(counter);
+
+            if (sample != null) {
+                sampler = new FeatureModelSampler(sample, options.getMaxDepth());
+                sampler.walk(folder, source -> submit(pipeline, journal, dirCounter.incrementAndGet(), folder, source));
+            } else {
+                new FeatureModelWalker(options.getMaxDepth()).walk(folder,
+                        source -> submit(pipeline, journal, dirCounter.incrementAndGet(), folder, source));
             }
         }
-    }
-
-    private void processFM(BufferedWriter writer, int counter, File file) throws IOException, FeatureModelParserException {
-        System.out.println("\nCalculating statistics for " + file.getName() + "...");
-
-        FMFormat fmFormat = FMFormat.getFMFormat(Files.getFileExtension(file.getName()));
-        FeatureModelParser parser = FMParserFactory.getInstance().getParser(fmFormat);
 
-        FeatureModel fm = parser.parse(file);
-        FMKB fmkb = new FMKB(fm, false);
-
-        System.out.println("Saving statistics to " + options.getOutFile() + "...");
-        saveFMStatistics(writer, counter, fmkb, fm);
+        if (costs != null) {
+            System.out.println("\nProcessing the knowledge bases largest first, " + costs.getNumKnown()
+                    + " costs known from earlier runs, " + costs.getNumEstimated() + " estimated from their sizes...");
+        }
+        pipeline.finish();
+        if (costs != null) {
+            costs.save();
+        }
 
-        System.out.println("Done - " + file.getName());
+        System.out.println("\nSummary: " + (numSucceeded + numFailed) + " knowledge bases, "
+                + numSucceeded + " succeeded, " + numFailed + " failed");
+        StatisticsCache cache = calculator.getCache();
+        if (cache != null) {
+            System.out.println("Cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+        }
+        if (options.isTimings()) {
+            System.out.println("\nTimings:\n" + timingReport.toTable());
+        }
+        if (estimator != null) {
+            System.out.println("\nEstimates:\n" + estimator.toTable(sampler.getPopulationSize(), System.nanoTime() - start));
+        }
     }
 
-    private void saveStatistics(BufferedWriter writer, int counter, KB kb) throws IOException {
-        boolean consistent = kb.getModelKB().getSolver().solve();
-
-        writer.write(counter + "\n");
-        writer.write("Name: " + kb.getName() + "\n");
-        writer.write("Source: " + kb.getSource() + "\n");
-        writer.write("#variables: " + kb.getNumVariables() + "\n");
-        writer.write("#constraints: " + kb.getNumConstraints() + "\n");
-        writer.write("#Choco variables: " + kb.getNumChocoVars() + "\n");
-        writer.write("#Choco constraints: " + kb.getNumChocoConstraints() + "\n");
-        writer.write("Consistency: " + consistent + "\n");
-
-        writer.flush();
+    /**
+     * Submits the task of the given feature model, unless it belongs to another shard, is an archive entry
+     * of a largest-first run, or has been completed by the resumed run.
+     * @param root the directory to which the path of the feature model is relative in its shard key
+     */
+    private void submit(OrderedStatisticsPipeline pipeline, CheckpointJournal journal, int fmCounter, Path root,
+                        FeatureModelSource source) throws IOException, FeatureModelParserException {
+        if (shard != null && !shard.contains(Shard.keyOf(root, source.getPath()))) {
+            return;
+        }
+        if (costs != null && source.getFile() == null) {
+            System.out.println("Skipped " + source.getPath() + " - " + LARGEST_FIRST_ARCHIVES);
+            return;
+        }
+        metrics.discovered();
+        if (!journal.isCompleted(fmCounter, source.getPath())) {
+            metrics.submitted();
+            long estimatedBytes = calculator.estimateMemory(source);
+            pipeline.submit(costOf(source.getPath(), estimatedBytes),
+                    () -> admit(estimatedBytes, calculator.fmTask(fmCounter, source)));
+        }
     }
 
-    private void saveFMStatistics(BufferedWriter writer, int counter, KB kb, FeatureModel fm) throws IOException {
-        double ctc = (double)fm.getNumOfConstraints() / kb.getNumConstraints();
+    /**
+     * Returns the expected cost of the given input for the largest-first schedule, 0 without it.
+     */
+    private long costOf(String input, long estimatedBytes) {
+        return costs != null ? costs.estimate(input, estimatedBytes) : 0;
+    }
 
-        saveStatistics(writer, counter, kb);
+    /**
+     * Admits the given task within the heap budget, if there is one.
+     */
+    private Callable<StatisticsRecord> admit(long estimatedBytes, Callable<StatisticsRecord> task) throws IOException {
+        if (budget == null) {
+            return task;
+        }
+        try {
+            return budget.admit(estimatedBytes, task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the heap budget", e);
+        }
+    }
 
-        writer.write("\n");
-        writer.write("CTC ratio: " + ctc + "\n");
-        writer.write("#features: " + fm.getNumOfFeatures() + "\n");
-        writer.write("#relationships: " + fm.getNumOfRelationships() + "\n");
-        writer.write("#constraints: " + fm.getNumOfConstraints() + "\n");
-        writer.write("#MANDATORY: " + fm.getNumOfRelationships(RelationshipType.MANDATORY) + "\n");
-        writer.write("#OPTIONAL: " + fm.getNumOfRelationships(RelationshipType.OPTIONAL) + "\n");
-        writer.write("#ALTERNATIVE: " + fm.getNumOfRelationships(RelationshipType.ALTERNATIVE) + "\n");
-        writer.write("#OR: " + fm.getNumOfRelationships(RelationshipType.OR) + "\n");
-        writer.write("#REQUIRES: " + fm.getNumOfRelationships(RelationshipType.REQUIRES) + "\n");
-        writer.write("#EXCLUDES: " + fm.getNumOfRelationships(RelationshipType.EXCLUDES) + "\n");
+    /**
+     * Writes the statistics of a knowledge base. Is only called by the single writer of the pipeline,
+     * in the order of the counter.
+     */
+    private void saveStatistics(StatisticsWriter writer, StatisticsRecord record) throws IOException {
+        System.out.println("Saving statistics of " + record.getName() + " to " + options.getOutFile() + "...");
+
+        PhaseTimings writeTimings = new PhaseTimings();
+        writeTimings.measure(Phase.WRITE, () -> {
+            writer.write(record);
+            return null;
+        });
+
+        timingReport.addAll(record.getTimings());
+        timingReport.addAll(writeTimings);
+        metrics.written(record);
+        metrics.addAll(writeTimings);
+
+        if (record.isFailed()) {
+            numFailed++;
+        } else {
+            numSucceeded++;
+        }
 
-        writer.flush();
+        System.out.println("Done - " + record.getName());
     }
 }
@@ -0,0 +1,352 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
+import at.tugraz.ist.ase.knowledgebases.app.cache.StatisticsCache;
+import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
+import at.tugraz.ist.ase.knowledgebases.app.core.ChocoModelProfile;
+import at.tugraz.ist.ase.knowledgebases.app.core.Consistency;
+import at.tugraz.ist.ase.knowledgebases.app.core.FMStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.Phase;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTimings;
+import at.tugraz.ist.ase.knowledgebases.app.core.ProcessingError;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolutionSpaceAnalyzer;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolveLimits;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsSelection;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelFormats;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelSource;
+import at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseProvider;
+import at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseRegistry;
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import at.tugraz.ist.ase.knowledgebases.fm.FMKB;
+import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Calculates the statistics of single knowledge bases with the settings of the command line options,
+ * i.e., the selected statistics, the solve limits, the cache and the fault isolation.
+ * <p>
+ * Thread-safe, the tasks are executed by the workers of the pipeline or the server.
+ */
+public class StatisticsCalculator {
+
+    /**
+     * Rough heap usage per byte of a feature model file, of the parsed feature model
+     * and of the knowledge base with its Choco model.
+     */
+    private static final long FM_BYTES_PER_FILE_BYTE = 20;
+    private static final long KB_BYTES_PER_FILE_BYTE = 100;
+
+    @Getter
+    private final Set<StatisticsSelection> statistics;
+    @Getter
+    private final SolveLimits solveLimits;
+    /**
+     * The number of copies of a knowledge base solved in parallel by the portfolio of its consistency check,
+     * 1 for the sequential consistency check.
+     */
+    @Getter
+    private final int portfolioSize;
+    /**
+     * The cache of the statistics of feature model files, null if the cache is bypassed.
+     */
+    @Getter
+    private final StatisticsCache cache;
+    private final boolean keepGoing;
+
+    /**
+     * @param portfolioSize the number of copies of a knowledge base solved in parallel by the consistency check
+     * @param cache the cache of the statistics of feature model files, null to bypass the cache
+     * @param keepGoing if true, failures become error records instead of exceptions
+     */
+    public StatisticsCalculator(@NonNull Set<StatisticsSelection> statistics, @NonNull SolveLimits solveLimits,
+                                int portfolioSize, StatisticsCache cache, boolean keepGoing) {
+        checkArgument(portfolioSize > 0, "The portfolio size must be positive.");
+
+        this.statistics = statistics;
+        this.solveLimits = solveLimits;
+        this.portfolioSize = portfolioSize;
+        this.cache = cache;
+        this.keepGoing = keepGoing;
+    }
+
+    /**
+     * Creates a calculator with the settings of the given command line options.
+     */
+    public static StatisticsCalculator of(@NonNull KBStatistics_CmdLineOptions options) throws IOException {
+        SolveLimits solveLimits = SolveLimits.builder()
+                .timeLimitMillis(options.getSolveTimeLimit())
+                .nodeLimit(options.getSolveNodeLimit())
+                .backtrackLimit(options.getSolveBacktrackLimit())
+                .solutionSpaceTimeLimitMillis(options.getSolutionSpaceTimeLimit())
+                .build();
+        // the cache is opt-in, so that separate runs don't share a cache unless asked to
+        StatisticsCache cache = options.getCacheDir() == null || options.isNoCache() ? null
+                : new StatisticsCache(Paths.get(options.getCacheDir()), options.isRebuildCache());
+
+        return new StatisticsCalculator(options.getStatistics(), solveLimits, options.getPortfolio(), cache,
+                options.isKeepGoing());
+    }
+
+    /**
+     * Returns the task calculating the statistics of the given feature model file.
+     */
+    public Callable<StatisticsRecord> fmTask(int counter, @NonNull File file) {
+        return fmTask(counter, FeatureModelSource.of(file));
+    }
+
+    /**
+     * Returns the task calculating the statistics of the given feature model, a file or an entry of an archive.
+     */
+    public Callable<StatisticsRecord> fmTask(int counter, @NonNull FeatureModelSource source) {
+        return isolated(counter, source.getPath(), source.getName(), timings -> processFM(counter, source, timings));
+    }
+
+    /**
+     * Returns the task building the given registered knowledge base and calculating its statistics.
+     */
+    public Callable<StatisticsRecord> kbTask(int counter, @NonNull String nameKb) {
+        return isolated(counter, nameKb, nameKb, timings -> processKB(counter, nameKb, timings));
+    }
+
+    /**
+     * Estimates the heap usage of calculating the statistics of the given feature model file from its size.
+     */
+    public long estimateMemory(@NonNull File file) {
+        return estimateMemory(FeatureModelSource.of(file));
+    }
+
+    /**
+     * Estimates the heap usage of calculating the statistics of the given feature model from its size.
+     */
+    public long estimateMemory(@NonNull FeatureModelSource source) {
+        long perFileByte = FM_BYTES_PER_FILE_BYTE;
+        if (StatisticsSelection.needsKB(statistics)) {
+            perFileByte += KB_BYTES_PER_FILE_BYTE * copies();
+        }
+        return source.size() * perFileByte;
+    }
+
+    /**
+     * Estimates the heap usage of building the given registered knowledge base and calculating its statistics.
+     */
+    public long estimateMemory(@NonNull String nameKb) {
+        long bytes = KnowledgeBaseRegistry.getDefault().find(nameKb)
+                .map(KnowledgeBaseProvider::estimateMemory)
+                .orElse(KnowledgeBaseProvider.DEFAULT_ESTIMATED_BYTES);
+        return bytes * copies();
+    }
+
+    @FunctionalInterface
+    private interface StatisticsTask {
+        StatisticsRecord calculate(PhaseTimings timings) throws Exception;
+    }
+
+    /**
+     * Wraps the task calculating the statistics of one knowledge base.
+     * With keep-going, a failure of the task doesn't abort the run but becomes an error record
+     * with the failed phase, the exception and the elapsed time.
+     * @param input the path of the feature model file or the name of the built-in knowledge base
+     */
+    private Callable<StatisticsRecord> isolated(int counter, String input, String name, StatisticsTask task) {
+        return () -> {
+            PhaseTimings timings = new PhaseTimings();
+            long start = System.nanoTime();
+            try {
+                return task.calculate(timings).toBuilder().input(input).build();
+            } catch (Exception | StackOverflowError e) {
+                if (!keepGoing) {
+                    throw e;
+                }
+                System.out.println("Failed - " + name + ": " + e);
+
+                return StatisticsRecord.builder()
+                        .counter(counter)
+                        .input(input)
+                        .name(name)
+                        .error(ProcessingError.of(timings.getCurrentPhase(), e, System.nanoTime() - start))
+                        .timings(timings)
+                        .build();
+            }
+        };
+    }
+
+    /**
+     * Returns the settings which the statistics of a feature model depend on, so that records calculated
+     * with other statistics, limits or portfolio sizes are cached apart.
+     */
+    private String variant() {
+        return statistics + "|" + solveLimits + "|portfolio=" + portfolioSize;
+    }
+
+    /**
+     * Parses the given feature model and calculates its statistics,
+     * or takes them from the cache if the content hasn't changed.
+     * The content is read once, for both the cache key and the format detection.
+     */
+    private StatisticsRecord processFM(int counter, FeatureModelSource source, PhaseTimings timings) throws Exception {
+        System.out.println("\nCalculating statistics for " + source.getName() + "...");
+
+        // reading belongs to the parse phase, so an unreadable file fails in it
+        byte[] content = timings.measure(Phase.PARSE, source::read);
+        String key = null;
+        if (cache != null) {
+            key = cache.key(source.getName(), ByteSource.wrap(content), variant());
+
+            Optional<StatisticsRecord> cached = cache.get(key);
+            if (cached.isPresent()) {
+                return cached.get().toBuilder().counter(counter).timings(timings).build();
+            }
+        }
+
+        FeatureModel fm = timings.measure(Phase.PARSE, () -> parse(source, content));
+
+        StatisticsRecord.StatisticsRecordBuilder builder = StatisticsRecord.builder().counter(counter).name(source.getName());
+        int numKBConstraints = StatisticsSelection.needsKB(statistics)
+                ? addKBStatistics(builder, fm, timings)
+                // without the knowledge base, the CTC ratio is based on the constraints of the feature model
+                : fm.getNumOfRelationships() + fm.getNumOfConstraints();
+        // the knowledge base is named after the parsed file, which may be a temporary file
+        builder.name(source.getName());
+
+        if (statistics.contains(StatisticsSelection.STRUCTURAL)) {
+            builder.fmStatistics(FMStatistics.of(fm, numKBConstraints));
+        }
+        StatisticsRecord record = builder.timings(timings).build();
+
+        // an unknown consistency or an incomplete solution space depends on the limits of this run, so it is not cached
+        if (cache != null && record.getConsistency() != Consistency.UNKNOWN
+                && (record.getSolutionSpace() == null || record.getSolutionSpace().isComplete())) {
+            cache.put(key, record);
+        }
+        return record;
+    }
+
+    /**
+     * Parses a feature model in the format recognized from its content, or from its extension
+     * if the content isn't recognized. A file on disk whose extension matches its format is parsed directly.
+     * The parsers only read files, so only the content of an archive entry, or of a file whose extension
+     * doesn't match its format, is written to a temporary file first.
+     */
+    private FeatureModel parse(FeatureModelSource source, byte[] content) throws IOException, FeatureModelParserException {
+        FMFormat extensionFormat = FMFormat.getFMFormat(MoreFiles.getFileExtension(Paths.get(source.getName())));
+        FMFormat fmFormat = FeatureModelFormats.sniff(content);
+        if (fmFormat == FMFormat.NONE) {
+            fmFormat = extensionFormat;
+        }
+        if (fmFormat == FMFormat.NONE) {
+            throw new FeatureModelParserException("The format of " + source.getName() + " is not supported.");
+        }
+        FeatureModelParser parser = FMParserFactory.getInstance().getParser(fmFormat);
+
+        if (source.getFile() != null && fmFormat == extensionFormat) {
+            return parser.parse(source.getFile());
+        }
+
+        // the parsers name the feature model after the file, so the temporary file keeps the original name
+        Path tempDir = Files.createTempDirectory("kbstatistics");
+        String fileName = fmFormat == extensionFormat ? source.getName()
+                : source.getName() + "." + FeatureModelFormats.extensionOf(fmFormat);
+        Path tempFile = tempDir.resolve(fileName);
+        try {
+            Files.write(tempFile, content);
+            return parser.parse(tempFile.toFile());
+        } finally {
+            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(tempDir);
+        }
+    }
+
+    /**
+     * Builds the knowledge base of the given feature model and adds its statistics to the given builder.
+     * The knowledge base and its Choco model are only referenced by this method,
+     * so they can be collected as soon as the numbers are extracted.
+     * @return the number of constraints of the knowledge base
+     */
+    private int addKBStatistics(StatisticsRecord.StatisticsRecordBuilder builder, FeatureModel fm, PhaseTimings timings) {
+        List<FMKB> fmkbs = timings.measure(Phase.BUILD, () -> build(() -> new FMKB(fm, false)));
+        FMKB fmkb = fmkbs.get(0);
+
+        builder.countsOf(fmkb);
+        if (statistics.contains(StatisticsSelection.CHOCO_PROFILE)) {
+            builder.chocoProfile(ChocoModelProfile.of(fmkb, fm));
+        }
+        if (statistics.contains(StatisticsSelection.CONSISTENCY)) {
+            builder.consistencyOf(fmkbs, solveLimits, timings);
+        }
+        if (statistics.contains(StatisticsSelection.SOLUTION_SPACE)) {
+            builder.solutionSpace(timings.measure(Phase.ANALYZE, () ->
+                    new SolutionSpaceAnalyzer(fmkb, fm, solveLimits.getSolutionSpaceTimeLimitMillis()).analyze()));
+        }
+        return fmkb.getNumConstraints();
+    }
+
+    /**
+     * Builds a registered knowledge base and calculates its statistics.
+     */
+    private StatisticsRecord processKB(int counter, String nameKb, PhaseTimings timings) {
+        List<KB> kbs = timings.measure(Phase.BUILD, () -> {
+            KnowledgeBaseProvider provider = KnowledgeBaseRegistry.getDefault().get(nameKb);
+            System.out.println("\nCalculating statistics for " + provider.getName() + "...");
+            return build(provider::create);
+        });
+
+        StatisticsRecord.StatisticsRecordBuilder builder = StatisticsRecord.of(counter, kbs.get(0));
+        if (statistics.contains(StatisticsSelection.CHOCO_PROFILE)) {
+            builder.chocoProfile(ChocoModelProfile.of(kbs.get(0), null));
+        }
+        if (statistics.contains(StatisticsSelection.CONSISTENCY)) {
+            builder.consistencyOf(kbs, solveLimits, timings);
+        }
+        return builder.timings(timings).build();
+    }
+
+    /**
+     * Builds a knowledge base, and further copies of it for the portfolio if its consistency is checked.
+     * Each copy has its own model and solver.
+     */
+    private <T extends KB> List<T> build(Supplier<T> factory) {
+        int copies = copies();
+
+        List<T> kbs = new ArrayList<>(copies);
+        for (int i = 0; i < copies; i++) {
+            kbs.add(factory.get());
+        }
+        return kbs;
+    }
+
+    /**
+     * Returns the number of copies of a knowledge base, more than one only for the portfolio of the consistency check.
+     */
+    private int copies() {
+        return statistics.contains(StatisticsSelection.CONSISTENCY) ? portfolioSize : 1;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.cache;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.knowledgebases.app.KBStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of statistics records of feature model files.
+ * <p>
+ * A record is stored under the SHA-256 hash of the file's name and bytes and the settings of the run,
+ * together with the versions of this tool and of the libraries calculating the statistics.
+ * A version is the implementation version of a jar and the hash of its content, so a jar rebuilt in place
+ * never hits the entries of the old one.
+ * Hence, a changed file or a new version of the tool never hits an old entry.
+ * Entries are stored in {@code <cacheDir>/<first two hex digits>/<hash>.ser}.
+ * <p>
+ * The cache is thread-safe.
+ */
+public class StatisticsCache {
+
+    /**
+     * Increase when the layout of {@link StatisticsRecord} changes.
+     */
+    private static final int FORMAT_VERSION = 7;
+
+    /**
+     * The hashes of the jars and class directories, calculated once per JVM.
+     */
+    private static final Map<Path, String> CODE_HASHES = new ConcurrentHashMap<>();
+
+    private final Path cacheDir;
+    private final boolean rebuild;
+    private final byte[] versionTag;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param cacheDir the directory storing the entries, created if it doesn't exist
+     * @param rebuild if true, existing entries are ignored and overwritten
+     */
+    public StatisticsCache(@NonNull Path cacheDir, boolean rebuild) throws IOException {
+        this.cacheDir = Files.createDirectories(cacheDir);
+        this.rebuild = rebuild;
+        this.versionTag = (FORMAT_VERSION
+                + "|" + versionOf(KBStatistics.class)
+                + "|" + versionOf(KB.class)
+                + "|" + versionOf(FeatureModel.class)
+                + "|").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Calculates the key of the given feature model file.
+     * @param variant distinguishes records of the same file calculated with different settings,
+     *                e.g., the selected statistics
+     */
+    public String key(@NonNull Path file, @NonNull String variant) throws IOException {
+        return key(file.getFileName().toString(), MoreFiles.asByteSource(file), variant);
+    }
+
+    /**
+     * Calculates the key of a feature model with the given file name and content,
+     * e.g., of a file which has been read already or of an entry of an archive.
+     */
+    public String key(@NonNull String fileName, @NonNull ByteSource content, @NonNull String variant) throws IOException {
+        byte[] name = (fileName + "|" + variant + "|").getBytes(StandardCharsets.UTF_8);
+
+        return ByteSource.concat(ByteSource.wrap(versionTag), ByteSource.wrap(name), content)
+                .hash(Hashing.sha256())
+                .toString();
+    }
+
+    /**
+     * Returns the cached record of the given key, or an empty Optional if there is none.
+     * Unreadable entries are deleted and count as misses.
+     */
+    public Optional<StatisticsRecord> get(@NonNull String key) {
+        Path entry = entryOf(key);
+        if (!rebuild && Files.isRegularFile(entry)) {
+            try (InputStream in = Files.newInputStream(entry);
+                 ObjectInputStream ois = new ObjectInputStream(in)) {
+                StatisticsRecord record = (StatisticsRecord) ois.readObject();
+
+                hits.incrementAndGet();
+                return Optional.of(record);
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                try {
+                    Files.deleteIfExists(entry);
+                } catch (IOException ignored) {
+                    // the entry will be overwritten by put
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores the record under the given key. The entry is written to a temporary file first
+     * and then moved, so concurrent readers never see a partial entry.
+     */
+    public void put(@NonNull String key, @NonNull StatisticsRecord record) throws IOException {
+        Path entry = entryOf(key);
+        Files.createDirectories(entry.getParent());
+
+        Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(record);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Path entryOf(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + ".ser");
+    }
+
+    /**
+     * Returns the implementation version of the jar containing the given class, if its manifest declares one,
+     * and the hash of the jar's content, or of the class files of a directory, e.g., when running from an IDE.
+     */
+    private static String versionOf(Class<?> clazz) throws IOException {
+        String version = clazz.getPackage().getImplementationVersion();
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return version != null ? version : "unknown";
+        }
+        Path location;
+        try {
+            location = Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return version + "@" + codeSource.getLocation();
+        }
+        String hash = CODE_HASHES.get(location);
+        if (hash == null) {
+            hash = hashOf(location);
+            CODE_HASHES.put(location, hash);
+        }
+        return version + "@" + hash;
+    }
+
+    /**
+     * Hashes the content of the given jar, or the paths and contents of the files of the given directory.
+     */
+    private static String hashOf(Path location) throws IOException {
+        if (!Files.isDirectory(location)) {
+            return MoreFiles.asByteSource(location).hash(Hashing.sha256()).toString();
+        }
+        Hasher hasher = Hashing.sha256().newHasher();
+        try (Stream<Path> files = Files.walk(location)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                hasher.putString(location.relativize(file).toString(), StandardCharsets.UTF_8);
+                hasher.putBytes(Files.readAllBytes(file));
+            }
+        }
+        return hasher.hash().toString();
+    }
+}
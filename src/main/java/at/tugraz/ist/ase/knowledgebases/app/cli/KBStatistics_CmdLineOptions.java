@@ -9,26 +9,39 @@
 package at.tugraz.ist.ase.knowledgebases.app.cli;
 
 import at.tugraz.ist.ase.common.CmdLineOptionsBase;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsSelection;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import at.tugraz.ist.ase.knowledgebases.app.sample.Sample;
+import at.tugraz.ist.ase.knowledgebases.app.shard.Shard;
 import lombok.Getter;
 import lombok.NonNull;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.spi.StringArrayOptionHandler;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class KBStatistics_CmdLineOptions extends CmdLineOptionsBase {
     @Getter
     @Option(name = "-kb",
             aliases="--knowledge-base",
-            usage = "Specify the name of a knowledge base, e.g. PC or Renault.",
+            usage = "Specify the name of a knowledge base, e.g. PC or Renault, see --list-kbs.",
             handler = StringArrayOptionHandler.class)
     private List<String> kb;
 
+    @Getter
+    @Option(name = "-list-kbs",
+            aliases="--list-kbs",
+            usage = "List the knowledge bases which can be selected with -kb, including those of plugin jars on the class path.")
+    private boolean listKBs = false;
+
     @Getter
     @Option(name = "-fm",
             aliases="--feature-model",
-            usage = "Specify the name of a feature model.")
+            usage = "Specify the name of a feature model, or of a .zip, .tar.gz or .tgz archive of feature models.")
     private String fm = null;
 
     @Getter
@@ -37,15 +50,252 @@ public class KBStatistics_CmdLineOptions extends CmdLineOptionsBase {
             usage = "Specify the directory of feature models.")
     private String fmDir = null;
 
+    @Getter
+    @Option(name = "-max-depth",
+            aliases="--max-depth",
+            usage = "Specify the maximum depth of subdirectories of -fm-dir to search for feature models, 1 for no subdirectories.")
+    private int maxDepth = Integer.MAX_VALUE;
+
     @Getter
     @Option(name = "-out",
             aliases="--output-file",
             usage = "Specify the output file.")
     private String outFile = "./statistics.txt";
 
+    @Getter
+    @Option(name = "-format",
+            aliases="--format",
+            usage = "Specify the output format: text, csv, or jsonl.")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    @Option(name = "-stats",
+            aliases="--statistics",
+            usage = "Specify a comma-separated list of the statistics to calculate: structural, choco, consistency, solution-space, choco-profile.")
+    private String statistics = "structural,choco,consistency";
+
+    @Getter
+    @Option(name = "-t",
+            aliases="--threads",
+            usage = "Specify the number of threads calculating the statistics of knowledge bases in parallel.")
+    private int threads = 1;
+
+    @Getter
+    @Option(name = "-heap-budget",
+            aliases="--heap-budget",
+            usage = "Specify the heap budget in MB of the knowledge bases processed at the same time, estimated from their file sizes, 0 for no budget.")
+    private long heapBudget = 0;
+
+    @Getter
+    @Option(name = "-largest-first",
+            aliases="--largest-first",
+            usage = "With -t, list all knowledge bases first and process the most expensive ones first, estimated from the timings " +
+                    "of earlier runs and the file sizes. The output keeps the original order. Archives aren't supported.")
+    private boolean largestFirst = false;
+
+    @Getter
+    @Option(name = "-keep-going",
+            aliases="--keep-going",
+            usage = "Continue with the next knowledge base if one fails, and save the failure as an error record.")
+    private boolean keepGoing = false;
+
+    @Getter
+    @Option(name = "-resume",
+            aliases="--resume",
+            usage = "Resume an interrupted run with the same options, appending only the missing records to the output file.")
+    private boolean resume = false;
+
+    @Getter
+    @Option(name = "-cache-dir",
+            aliases="--cache-dir",
+            usage = "Cache the statistics of the feature model files in the given directory. Without it, nothing is cached.")
+    private String cacheDir = null;
+
+    @Getter
+    @Option(name = "-no-cache",
+            aliases="--no-cache",
+            usage = "Calculate the statistics of all feature models without using the cache given by -cache-dir.")
+    private boolean noCache = false;
+
+    @Getter
+    @Option(name = "-rebuild-cache",
+            aliases="--rebuild-cache",
+            usage = "Ignore the cached statistics and overwrite them with new ones.")
+    private boolean rebuildCache = false;
+
+    @Getter
+    @Option(name = "-time-limit",
+            aliases="--solve-time-limit",
+            usage = "Specify the time limit in milliseconds of the consistency check of each knowledge base, 0 for no limit.")
+    private long solveTimeLimit = 0;
+
+    @Getter
+    @Option(name = "-node-limit",
+            aliases="--solve-node-limit",
+            usage = "Specify the node limit of the consistency check of each knowledge base, 0 for no limit.")
+    private long solveNodeLimit = 0;
+
+    @Getter
+    @Option(name = "-backtrack-limit",
+            aliases="--solve-backtrack-limit",
+            usage = "Specify the backtrack limit of the consistency check of each knowledge base, 0 for no limit.")
+    private long solveBacktrackLimit = 0;
+
+    @Getter
+    @Option(name = "-solution-space-time-limit",
+            aliases="--solution-space-time-limit",
+            usage = "Specify the time limit in milliseconds of each solution space metric of a feature model.")
+    private long solutionSpaceTimeLimit = 10_000;
+
+    @Getter
+    @Option(name = "-portfolio",
+            aliases="--portfolio",
+            usage = "Specify the number of copies of each knowledge base solved in parallel with different search strategies by the consistency check, 1 for sequential solving.")
+    private int portfolio = 1;
+
+    @Getter
+    @Option(name = "-solver-stats",
+            aliases="--solver-stats",
+            usage = "Save the solver's measures (nodes, backtracks, fails, solve time) of the consistency check.")
+    private boolean solverStats = false;
+
+    @Getter
+    @Option(name = "-fm-metrics",
+            aliases="--fm-metrics",
+            usage = "Save the tree metrics of feature models: tree depth, leaves, branching factors, features in cross-tree constraints, constraint density and group sizes.")
+    private boolean fmMetrics = false;
+
+    @Getter
+    @Option(name = "-timings",
+            aliases="--timings",
+            usage = "Save the wall-clock time, CPU time and allocated bytes of parsing, KB building and solving of each knowledge base, and print their percentiles at the end.")
+    private boolean timings = false;
+
+    @Getter
+    @Option(name = "-metrics-file",
+            aliases="--metrics-file",
+            usage = "Specify a file to which the metrics of the run are written in the Prometheus text format while the run is running.")
+    private String metricsFile = null;
+
+    @Getter
+    @Option(name = "-metrics-interval",
+            aliases="--metrics-interval",
+            usage = "Specify the interval in seconds of updating the metrics file.")
+    private long metricsInterval = 10;
+
+    @Getter
+    @Option(name = "-server-port",
+            aliases="--server-port",
+            usage = "Run as a statistics server on the given local port instead of processing the knowledge bases once, 0 for any free port.")
+    private Integer serverPort = null;
+
+    @Getter
+    @Option(name = "-warmup",
+            aliases="--warmup",
+            usage = "Specify the number of times the server processes a synthetic feature model before accepting requests.")
+    private int warmUp = 20;
+
+    @Getter
+    @Option(name = "-compare",
+            aliases="--compare",
+            usage = "Compare two corpora instead of processing the knowledge bases once: the old and the new one, each a directory, " +
+                    "an archive, a feature model or a JSON Lines output of an earlier run. Only the differences are saved.",
+            handler = StringArrayOptionHandler.class)
+    private List<String> compare;
+
+    @Getter
+    @Option(name = "-store",
+            aliases="--store",
+            usage = "Specify a binary statistics store to which the records are also added, for fast queries with -query.")
+    private String store = null;
+
+    @Getter
+    @Option(name = "-query",
+            aliases="--query",
+            usage = "Query the given statistics store instead of processing the knowledge bases, see -where and -select.")
+    private String query = null;
+
+    @Getter
+    @Option(name = "-where",
+            aliases="--where",
+            usage = "Specify the comma-separated conditions of -query, e.g. consistency=consistent,features>500,ctc_ratio>0.2.")
+    private String where = null;
+
+    @Getter
+    @Option(name = "-select",
+            aliases="--select",
+            usage = "Specify the comma-separated columns of the results of -query, e.g. name,features,ctc_ratio, all columns by default.")
+    private String select = null;
+
+    @Option(name = "-shard",
+            aliases="--shard",
+            usage = "Process only the i-th of N disjoint slices of the knowledge bases, given as i/N, e.g. 2/4. " +
+                    "The slices depend on the stable hash of the names and relative paths, not on the order of the inputs.")
+    private String shard = null;
+
+    @Getter
+    @Option(name = "-merge",
+            aliases="--merge",
+            usage = "Merge the CSV or JSON Lines outputs of the shards of a run into the output file instead of processing the knowledge bases, " +
+                    "numbering the records from 1.",
+            handler = StringArrayOptionHandler.class)
+    private List<String> merge;
+
+    @Option(name = "-sample",
+            aliases="--sample",
+            usage = "Process only a random sample of the feature models of -fm-dir, given as a number of models, e.g. 500, " +
+                    "or a fraction, e.g. 0.01 or 1%, and estimate the statistics of all models with confidence intervals.")
+    private String sample = null;
+
+    @Getter
+    @Option(name = "-sample-seed",
+            aliases="--sample-seed",
+            usage = "Specify the seed of -sample, the same seed selects the same feature models.")
+    private long sampleSeed = 1;
+
+    @Getter
+    @Option(name = "-regression-threshold",
+            aliases="--regression-threshold",
+            usage = "Specify the percentage by which a timing of the new corpus must exceed the old one to be reported as a regression.")
+    private double regressionThreshold = 20;
+
     public KBStatistics_CmdLineOptions(String banner, @NonNull String programTitle, String subtitle, @NonNull String usage) {
         super(banner, programTitle, subtitle, usage);
 
         parser = new CmdLineParser(this);
     }
+
+    public Set<StatisticsSelection> getStatistics() {
+        return StatisticsSelection.parse(statistics);
+    }
+
+    /**
+     * Returns the shard of the knowledge bases to process, null to process all of them.
+     */
+    public Shard getShard() {
+        return shard == null ? null : Shard.parse(shard);
+    }
+
+    /**
+     * Returns the sample of the feature models of -fm-dir to process, null to process all of them.
+     */
+    public Sample getSample() {
+        return sample == null ? null : Sample.parse(sample, sampleSeed);
+    }
+
+    /**
+     * Returns the optional column groups of the output requested by the options.
+     */
+    public Set<StatisticsColumn.Group> getOutputGroups() {
+        Set<StatisticsColumn.Group> groups = EnumSet.noneOf(StatisticsColumn.Group.class);
+        if (solverStats) {
+            groups.add(StatisticsColumn.Group.SOLVER);
+        }
+        if (fmMetrics) {
+            groups.add(StatisticsColumn.Group.FM_METRICS);
+        }
+        if (timings) {
+            groups.add(StatisticsColumn.Group.TIMINGS);
+        }
+        return groups;
+    }
 }
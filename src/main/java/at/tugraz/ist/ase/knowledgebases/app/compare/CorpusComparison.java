@@ -0,0 +1,272 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.compare;
+
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.knowledgebases.app.StatisticsCalculator;
+import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
+import at.tugraz.ist.ase.knowledgebases.app.core.OrderedStatisticsPipeline;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelSource;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelWalker;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import at.tugraz.ist.ase.knowledgebases.app.shard.Shard;
+import com.google.common.hash.Hashing;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compares the statistics of two corpora of feature models, e.g., last week's and this week's snapshot,
+ * or the statistics of a corpus with the records of a run with another tool version,
+ * and saves only the differences of each model.
+ * <p>
+ * Each side is a directory, an archive or a feature model file, whose statistics are calculated (or taken
+ * from the cache), or a JSON Lines file written by an earlier run. The models are keyed by their paths relative to
+ * the directory or archive. A model of the new corpus with the same name and content as a model of the old corpus
+ * is not calculated again, since its statistics can't differ; the records of an earlier run have no content hash,
+ * so they are never reused.
+ */
+public class CorpusComparison {
+
+    /**
+     * Timing differences below this are noise, however large they are relatively.
+     */
+    static final double MIN_REGRESSION_MILLIS = 1.0;
+
+    /**
+     * The wall-clock timings, compared against the regression threshold.
+     */
+    private static final Set<StatisticsColumn> TIMINGS = EnumSet.of(StatisticsColumn.PARSE_WALL_MS,
+            StatisticsColumn.BUILD_WALL_MS, StatisticsColumn.SOLVE_WALL_MS, StatisticsColumn.ANALYZE_WALL_MS);
+    /**
+     * The columns which identify a record or which vary from run to run.
+     */
+    private static final Set<StatisticsColumn> IGNORED = EnumSet.of(StatisticsColumn.COUNTER, StatisticsColumn.NAME,
+            StatisticsColumn.INPUT, StatisticsColumn.SOLVE_TIME_S,
+            StatisticsColumn.ERROR, StatisticsColumn.ERROR_MESSAGE, StatisticsColumn.ERROR_ELAPSED_MS,
+            StatisticsColumn.PARSE_CPU_MS, StatisticsColumn.PARSE_ALLOCATED_BYTES,
+            StatisticsColumn.BUILD_CPU_MS, StatisticsColumn.BUILD_ALLOCATED_BYTES,
+            StatisticsColumn.SOLVE_CPU_MS, StatisticsColumn.SOLVE_ALLOCATED_BYTES,
+            StatisticsColumn.ANALYZE_CPU_MS, StatisticsColumn.ANALYZE_ALLOCATED_BYTES);
+
+    private final KBStatistics_CmdLineOptions options;
+    private final StatisticsCalculator calculator;
+
+    /**
+     * The number of models of the new corpus whose statistics were taken from the old corpus.
+     */
+    @Getter
+    private int numReused;
+
+    public CorpusComparison(@NonNull KBStatistics_CmdLineOptions options) throws IOException {
+        checkArgument(options.getCompare().size() == 2, "-compare needs the old and the new corpus.");
+
+        this.options = options;
+        this.calculator = StatisticsCalculator.of(options);
+    }
+
+    /**
+     * Calculates or loads the statistics of both corpora and saves their differences to the output file.
+     */
+    public List<ModelDelta> compare() throws IOException, FeatureModelParserException {
+        StatisticsSnapshot oldSnapshot = load(options.getCompare().get(0), null);
+        StatisticsSnapshot newSnapshot = load(options.getCompare().get(1), oldSnapshot);
+
+        List<ModelDelta> deltas = diff(oldSnapshot, newSnapshot, OutputFormat.enabledGroups(options.getOutputGroups()),
+                options.getRegressionThreshold());
+
+        @Cleanup BufferedWriter out = Files.newBufferedWriter(Paths.get(options.getOutFile()), StandardCharsets.UTF_8);
+        DeltaWriter.write(out, options.getFormat(), deltas);
+
+        System.out.println("\nCompared " + oldSnapshot.size() + " with " + newSnapshot.size() + " knowledge bases, "
+                + numReused + " unchanged models not calculated again, " + deltas.size() + " differences");
+        return deltas;
+    }
+
+    /**
+     * Returns the snapshot of one side.
+     * @param reuse the snapshot of the old side, whose statistics are taken for unchanged models, or null
+     */
+    private StatisticsSnapshot load(String input, StatisticsSnapshot reuse) throws IOException, FeatureModelParserException {
+        Path path = Paths.get(input);
+        if (input.toLowerCase(Locale.ROOT).endsWith(".jsonl")) {
+            System.out.println("\nLoading the statistics of " + input + "...");
+            return StatisticsSnapshot.ofJsonLines(path);
+        }
+
+        Map<String, StatisticsSnapshot.Entry> reusable = new HashMap<>();
+        if (reuse != null) {
+            reuse.asMap().values().stream()
+                    .filter(entry -> entry.getContentHash() != null)
+                    .forEach(entry -> reusable.put(entry.getContentHash(), entry));
+        }
+
+        Map<String, StatisticsSnapshot.Entry> entries = new LinkedHashMap<>();
+        // the inputs and hashes of the submitted models by counter, until their records are written
+        Map<Integer, String> inputs = new HashMap<>();
+        Map<Integer, String> hashes = new HashMap<>();
+        AtomicInteger counter = new AtomicInteger();
+
+        @Cleanup OrderedStatisticsPipeline pipeline = new OrderedStatisticsPipeline(options.getThreads(), record -> {
+            entries.put(inputs.remove(record.getCounter()), StatisticsSnapshot.Entry.of(record, hashes.remove(record.getCounter())));
+        });
+        FeatureModelWalker.Visitor visitor = source -> {
+            String key = keyOf(path, source.getPath());
+            // an unreadable model is calculated, i.e., fails, without a hash
+            String hash = source.getReadError() == null ? hashOf(source) : null;
+            StatisticsSnapshot.Entry unchanged = reusable.get(hash);
+            if (unchanged != null) {
+                entries.put(key, unchanged);
+                numReused++;
+                return;
+            }
+            int fmCounter = counter.incrementAndGet();
+            inputs.put(fmCounter, key);
+            hashes.put(fmCounter, hash);
+            pipeline.submit(calculator.fmTask(fmCounter, source));
+        };
+
+        if (Files.isDirectory(path)) {
+            new FeatureModelWalker(options.getMaxDepth()).walk(path, visitor);
+        } else {
+            FeatureModelWalker.visit(path, visitor);
+        }
+        pipeline.finish();
+
+        return StatisticsSnapshot.of(entries);
+    }
+
+    /**
+     * Returns the differences of the models of the two snapshots, sorted by model:
+     * added and removed models, changed statistics, consistency flips,
+     * and wall-clock timings which grew by more than the given threshold.
+     * Models with the same content hash on both sides have no differences.
+     * @param groups the compared column groups, e.g., the timings only if they were requested
+     * @param regressionThreshold the threshold of timing regressions in percent
+     */
+    public static List<ModelDelta> diff(@NonNull StatisticsSnapshot oldSnapshot, @NonNull StatisticsSnapshot newSnapshot,
+                                        @NonNull Set<StatisticsColumn.Group> groups, double regressionThreshold) {
+        Set<String> models = new TreeSet<>(oldSnapshot.asMap().keySet());
+        models.addAll(newSnapshot.asMap().keySet());
+
+        List<ModelDelta> deltas = new ArrayList<>();
+        for (String model : models) {
+            StatisticsSnapshot.Entry oldEntry = oldSnapshot.get(model);
+            StatisticsSnapshot.Entry newEntry = newSnapshot.get(model);
+            if (oldEntry == null) {
+                deltas.add(ModelDelta.builder().model(model).kind(ModelDelta.Kind.ADDED).build());
+            } else if (newEntry == null) {
+                deltas.add(ModelDelta.builder().model(model).kind(ModelDelta.Kind.REMOVED).build());
+            } else if (oldEntry.getContentHash() == null || !oldEntry.getContentHash().equals(newEntry.getContentHash())) {
+                diff(model, oldEntry, newEntry, groups, regressionThreshold, deltas);
+            }
+        }
+        return deltas;
+    }
+
+    private static void diff(String model, StatisticsSnapshot.Entry oldEntry, StatisticsSnapshot.Entry newEntry,
+                             Set<StatisticsColumn.Group> groups, double regressionThreshold, List<ModelDelta> deltas) {
+        for (StatisticsColumn column : StatisticsColumn.values()) {
+            if (IGNORED.contains(column) || !groups.contains(column.getGroup())) {
+                continue;
+            }
+            Object oldValue = oldEntry.get(column);
+            Object newValue = newEntry.get(column);
+            // a statistic which only one side calculated isn't a difference, but a new failure is
+            if ((oldValue == null || newValue == null) && column != StatisticsColumn.ERROR_PHASE) {
+                continue;
+            }
+
+            ModelDelta.ModelDeltaBuilder delta = ModelDelta.builder().model(model).column(column.getKey())
+                    .oldValue(oldValue).newValue(newValue);
+            if (TIMINGS.contains(column)) {
+                double oldMillis = ((Number) oldValue).doubleValue();
+                double newMillis = ((Number) newValue).doubleValue();
+                if (newMillis - oldMillis >= MIN_REGRESSION_MILLIS
+                        && newMillis > oldMillis * (1 + regressionThreshold / 100)) {
+                    String percent = oldMillis > 0
+                            ? String.format(Locale.ROOT, "%+.1f%%", (newMillis / oldMillis - 1) * 100) : null;
+                    deltas.add(delta.kind(ModelDelta.Kind.REGRESSED).delta(percent).build());
+                }
+            } else if (!same(oldValue, newValue)) {
+                ModelDelta.Kind kind = column == StatisticsColumn.CONSISTENCY ? ModelDelta.Kind.FLIPPED : ModelDelta.Kind.CHANGED;
+                deltas.add(delta.kind(kind).delta(difference(oldValue, newValue)).build());
+            }
+        }
+    }
+
+    /**
+     * Compares numbers by value, since the records of an earlier run have Longs and Doubles instead of Integers.
+     */
+    private static boolean same(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            return Double.compare(x.doubleValue(), y.doubleValue()) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static String difference(Object oldValue, Object newValue) {
+        if (!(oldValue instanceof Number x) || !(newValue instanceof Number y)) {
+            return null;
+        }
+        if (isIntegral(x) && isIntegral(y)) {
+            return String.format(Locale.ROOT, "%+d", y.longValue() - x.longValue());
+        }
+        return String.format(Locale.ROOT, "%+.4f", y.doubleValue() - x.doubleValue());
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long;
+    }
+
+    /**
+     * Returns the key of a feature model of the given corpus: its path relative to the directory,
+     * its path in the archive, or the file name of a single feature model.
+     */
+    static String keyOf(Path corpus, String path) {
+        if (Files.isDirectory(corpus)) {
+            return Shard.keyOf(corpus, path);
+        }
+        String normalized = path.replace('\\', '/');
+        int entry = normalized.indexOf("!/");
+        return entry >= 0 ? normalized.substring(entry + 2) : Paths.get(path).getFileName().toString();
+    }
+
+    /**
+     * Hashes the name and the content of a feature model, the statistics depend on both.
+     */
+    private static String hashOf(FeatureModelSource source) throws IOException {
+        return Hashing.sha256().newHasher()
+                .putString(source.getName() + "|", StandardCharsets.UTF_8)
+                .putBytes(source.read())
+                .hash()
+                .toString();
+    }
+}
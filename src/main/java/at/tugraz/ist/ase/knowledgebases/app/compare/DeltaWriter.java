@@ -0,0 +1,86 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.compare;
+
+import at.tugraz.ist.ase.knowledgebases.app.io.CsvStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the differences of a comparison in the output formats of the statistics:
+ * a line per difference as text, or the columns model, kind, column, old, new and delta as CSV or JSON Lines.
+ */
+@UtilityClass
+public class DeltaWriter {
+
+    public static final String CSV_HEADER = "model,kind,column,old,new,delta";
+
+    public static void write(@NonNull Writer out, @NonNull OutputFormat format, @NonNull List<ModelDelta> deltas) throws IOException {
+        if (format == OutputFormat.CSV) {
+            out.write(CSV_HEADER + "\n");
+        }
+        for (ModelDelta delta : deltas) {
+            out.write(switch (format) {
+                case TEXT -> toText(delta);
+                case CSV -> toCsv(delta);
+                case JSONL -> toJson(delta);
+            });
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * E.g., "a.sxfm: features 12 -> 13 (+1)" or "b.sxfm: added".
+     */
+    static String toText(ModelDelta delta) {
+        String kind = delta.getKind().name().toLowerCase(Locale.ROOT);
+        if (delta.getColumn() == null) {
+            return delta.getModel() + ": " + kind;
+        }
+        StringBuilder line = new StringBuilder(delta.getModel()).append(": ")
+                .append(delta.getColumn()).append(' ')
+                .append(delta.getOldValue()).append(" -> ").append(delta.getNewValue());
+        if (delta.getDelta() != null) {
+            line.append(" (").append(delta.getDelta()).append(')');
+        }
+        if (delta.getKind() == ModelDelta.Kind.REGRESSED) {
+            line.append(' ').append(kind);
+        }
+        return line.toString();
+    }
+
+    private static String toCsv(ModelDelta delta) {
+        return String.join(",",
+                CsvStatisticsWriter.escape(delta.getModel()),
+                delta.getKind().name().toLowerCase(Locale.ROOT),
+                csv(delta.getColumn()), csv(delta.getOldValue()), csv(delta.getNewValue()), csv(delta.getDelta()));
+    }
+
+    private static String csv(Object value) {
+        return value == null ? "" : CsvStatisticsWriter.escape(value.toString());
+    }
+
+    private static String toJson(ModelDelta delta) {
+        return "{" + JsonLinesStatisticsWriter.quote("model") + ":" + JsonLinesStatisticsWriter.quote(delta.getModel())
+                + "," + JsonLinesStatisticsWriter.quote("kind") + ":" + JsonLinesStatisticsWriter.quote(delta.getKind().name().toLowerCase(Locale.ROOT))
+                + "," + JsonLinesStatisticsWriter.quote("column") + ":" + JsonLinesStatisticsWriter.toJson(delta.getColumn())
+                + "," + JsonLinesStatisticsWriter.quote("old") + ":" + JsonLinesStatisticsWriter.toJson(delta.getOldValue())
+                + "," + JsonLinesStatisticsWriter.quote("new") + ":" + JsonLinesStatisticsWriter.toJson(delta.getNewValue())
+                + "," + JsonLinesStatisticsWriter.quote("delta") + ":" + JsonLinesStatisticsWriter.toJson(delta.getDelta())
+                + "}";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.compare;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A difference of one knowledge base between two corpora or two tool versions.
+ */
+@Getter
+@Builder
+public class ModelDelta {
+
+    public enum Kind {
+        /**
+         * The knowledge base is only in the new corpus.
+         */
+        ADDED,
+        /**
+         * The knowledge base is only in the old corpus.
+         */
+        REMOVED,
+        /**
+         * A structural count, a Choco count or another statistic changed.
+         */
+        CHANGED,
+        /**
+         * The consistency changed.
+         */
+        FLIPPED,
+        /**
+         * A timing exceeds the old timing by more than the regression threshold.
+         */
+        REGRESSED
+    }
+
+    /**
+     * The key of the knowledge base, its path relative to the corpus.
+     */
+    @NonNull
+    private final String model;
+    @NonNull
+    private final Kind kind;
+    /**
+     * The key of the column, see {@link at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn}, null for ADDED and REMOVED.
+     */
+    private final String column;
+    private final Object oldValue;
+    private final Object newValue;
+    /**
+     * The difference of numeric values, e.g., "+3" or "+42.5%" for a regression, null otherwise.
+     */
+    private final String delta;
+}
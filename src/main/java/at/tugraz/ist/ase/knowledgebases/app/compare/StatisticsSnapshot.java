@@ -0,0 +1,132 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.compare;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsReader;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The statistics of one side of a comparison, keyed by the path of each knowledge base relative to the corpus,
+ * so that the same model in two snapshots of a corpus has the same key.
+ */
+public class StatisticsSnapshot {
+
+    /**
+     * The statistics of one knowledge base.
+     */
+    @Getter
+    public static class Entry {
+        /**
+         * The values by column key, see {@link StatisticsColumn}.
+         */
+        private final Map<String, Object> values;
+        /**
+         * The hash of the feature model's name and content, null if unknown, e.g., for records of an earlier run,
+         * which are hence never reused.
+         */
+        private final String contentHash;
+
+        public Entry(@NonNull Map<String, Object> values, String contentHash) {
+            this.values = Collections.unmodifiableMap(values);
+            this.contentHash = contentHash;
+        }
+
+        public static Entry of(@NonNull StatisticsRecord record, String contentHash) {
+            Map<String, Object> values = new HashMap<>();
+            for (StatisticsColumn column : StatisticsColumn.values()) {
+                values.put(column.getKey(), column.valueOf(record));
+            }
+            return new Entry(values, contentHash);
+        }
+
+        public Object get(@NonNull StatisticsColumn column) {
+            return values.get(column.getKey());
+        }
+    }
+
+    private final SortedMap<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Creates a snapshot of the given entries.
+     * @param entries the entries by key, the path of the feature model relative to the corpus
+     */
+    public static StatisticsSnapshot of(@NonNull Map<String, Entry> entries) {
+        StatisticsSnapshot snapshot = new StatisticsSnapshot();
+        snapshot.entries.putAll(entries);
+        return snapshot;
+    }
+
+    /**
+     * Loads the records of an earlier run, written in the JSON Lines format.
+     * The directory of the corpus isn't part of the records, so they are keyed by their inputs
+     * without the directory common to all of them.
+     */
+    public static StatisticsSnapshot ofJsonLines(@NonNull Path file) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Map<String, Object> record : JsonLinesStatisticsReader.read(file)) {
+            Object input = record.get(StatisticsColumn.INPUT.getKey());
+            if (input == null) {
+                input = record.get(StatisticsColumn.NAME.getKey());
+            }
+            entries.put(String.valueOf(input), new Entry(record, null));
+        }
+        return of(withoutCommonDir(entries));
+    }
+
+    public Entry get(@NonNull String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the entries sorted by key.
+     */
+    public SortedMap<String, Entry> asMap() {
+        return Collections.unmodifiableSortedMap(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static Map<String, Entry> withoutCommonDir(Map<String, Entry> entries) {
+        String root = null;
+        for (String input : entries.keySet()) {
+            root = root == null ? normalize(input) : commonPrefix(root, normalize(input));
+        }
+        String dir = root == null ? "" : root.substring(0, root.lastIndexOf('/') + 1);
+
+        Map<String, Entry> keyed = new LinkedHashMap<>();
+        entries.forEach((input, entry) -> keyed.put(normalize(input).substring(dir.length()), entry));
+        return keyed;
+    }
+
+    private static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+
+    private static String commonPrefix(String a, String b) {
+        int length = 0;
+        while (length < a.length() && length < b.length() && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        return a.substring(0, length);
+    }
+}
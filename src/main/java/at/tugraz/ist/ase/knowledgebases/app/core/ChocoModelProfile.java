@@ -0,0 +1,229 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.core.Relationship;
+import at.tugraz.ist.ase.fm.core.RelationshipType;
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Attributes the Choco variables, constraints, propagators and domain sizes of a knowledge base
+ * to the constructs they were generated for, so that the constructs which dominate the Choco model can be found.
+ * <p>
+ * The construct of a constraint of a feature model's knowledge base is the {@link RelationshipType}
+ * of its relationship or cross-tree constraint, otherwise the name of the KB constraint.
+ * A Choco variable belongs to a construct if only the propagators of that construct use it,
+ * e.g., the reified variables of an ALTERNATIVE group. The variables of several constructs,
+ * e.g., the features, are {@link #SHARED}. Choco constraints which aren't generated for a KB constraint,
+ * and variables which no propagator uses, are {@link #UNATTRIBUTED}.
+ * <p>
+ * The entries are sorted by the number of propagators, the largest first. Beyond {@link #MAX_ENTRIES}
+ * constructs, e.g., for the many constraints of Renault, the smallest ones are summed up as {@link #OTHERS}.
+ */
+@Getter
+public class ChocoModelProfile implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final String SHARED = "(shared)";
+    public static final String UNATTRIBUTED = "(unattributed)";
+    public static final String OTHERS = "(others)";
+    public static final int MAX_ENTRIES = 10;
+
+    /**
+     * The Choco model of one construct.
+     */
+    @Getter
+    @Builder(toBuilder = true)
+    public static class Entry implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String construct;
+        private final int numConstraints;
+        private final int numChocoConstraints;
+        private final int numPropagators;
+        private final int numChocoVars;
+        /**
+         * The sum of the domain sizes of the construct's integer and boolean variables.
+         */
+        private final long domainSize;
+
+        Entry plus(Entry other) {
+            return toBuilder()
+                    .numConstraints(numConstraints + other.numConstraints)
+                    .numChocoConstraints(numChocoConstraints + other.numChocoConstraints)
+                    .numPropagators(numPropagators + other.numPropagators)
+                    .numChocoVars(numChocoVars + other.numChocoVars)
+                    .domainSize(domainSize + other.domainSize)
+                    .build();
+        }
+
+        /**
+         * E.g., "MANDATORY:12/12/12/0/0", the numbers of KB constraints, Choco constraints, propagators,
+         * Choco variables and the domain size.
+         */
+        @Override
+        public String toString() {
+            return construct + ":" + numConstraints + "/" + numChocoConstraints + "/" + numPropagators
+                    + "/" + numChocoVars + "/" + domainSize;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private ChocoModelProfile(List<Entry> entries) {
+        this.entries = List.copyOf(entries);
+    }
+
+    /**
+     * Profiles the Choco model of the given knowledge base.
+     * @param fm the feature model of the knowledge base, whose relationship types are the constructs, or null
+     */
+    public static ChocoModelProfile of(@NonNull KB kb, FeatureModel fm) {
+        Map<String, String> constructs = fm == null ? Map.of() : constructsOf(fm);
+        Map<String, Tally> tallies = new LinkedHashMap<>();
+
+        // the construct of each Choco constraint generated for a KB constraint
+        Map<Constraint, String> owners = new IdentityHashMap<>();
+        for (at.tugraz.ist.ase.knowledgebases.core.Constraint constraint : kb.getConstraintList()) {
+            String construct = constructOf(constraint.getName(), constructs);
+            tallies.computeIfAbsent(construct, c -> new Tally()).numConstraints++;
+            for (Constraint chocoConstraint : constraint.getChocoConstraints()) {
+                owners.putIfAbsent(chocoConstraint, construct);
+            }
+        }
+
+        // the construct of each variable, SHARED if the propagators of several constructs use it
+        Model model = kb.getModelKB();
+        Map<Variable, String> variables = new IdentityHashMap<>();
+        for (Constraint chocoConstraint : model.getCstrs()) {
+            String construct = owners.getOrDefault(chocoConstraint, UNATTRIBUTED);
+            Tally tally = tallies.computeIfAbsent(construct, c -> new Tally());
+            tally.numChocoConstraints++;
+            tally.numPropagators += chocoConstraint.getPropagators().length;
+
+            for (Propagator<?> propagator : chocoConstraint.getPropagators()) {
+                for (Variable variable : propagator.getVars()) {
+                    variables.merge(variable, construct, (previous, current) -> previous.equals(current) ? previous : SHARED);
+                }
+            }
+        }
+        for (Variable variable : model.getVars()) {
+            Tally tally = tallies.computeIfAbsent(variables.getOrDefault(variable, UNATTRIBUTED), c -> new Tally());
+            tally.numChocoVars++;
+            tally.domainSize += variable instanceof IntVar intVar ? intVar.getDomainSize() : 0;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        tallies.forEach((construct, tally) -> entries.add(tally.toEntry(construct)));
+        entries.sort(Comparator.comparingInt(Entry::getNumPropagators).reversed()
+                .thenComparing(Entry::getConstruct));
+
+        if (entries.size() > MAX_ENTRIES) {
+            List<Entry> smallest = entries.subList(MAX_ENTRIES - 1, entries.size());
+            Entry others = smallest.stream().reduce(new Tally().toEntry(OTHERS), Entry::plus);
+            smallest.clear();
+            entries.add(others);
+        }
+        return new ChocoModelProfile(entries);
+    }
+
+    /**
+     * Maps the rules of the feature model's relationships and cross-tree constraints, the names of their KB constraints,
+     * to their types.
+     */
+    private static Map<String, String> constructsOf(FeatureModel fm) {
+        Map<String, String> constructs = new HashMap<>();
+        for (List<Relationship> relationships : List.of(fm.getRelationships(), fm.getConstraints())) {
+            for (Relationship relationship : relationships) {
+                if (relationship.getConfRule() != null) {
+                    constructs.putIfAbsent(relationship.getConfRule(), relationship.getType().name());
+                }
+            }
+        }
+        return constructs;
+    }
+
+    /**
+     * Returns the type of the relationship the KB constraint was generated for, also if its name is a rule
+     * like "mandatory(A, B)" which isn't in the given rules, otherwise its name.
+     */
+    private static String constructOf(String name, Map<String, String> constructs) {
+        String construct = constructs.get(name);
+        if (construct != null) {
+            return construct;
+        }
+        int bracket = name.indexOf('(');
+        if (!constructs.isEmpty() && bracket > 0) {
+            try {
+                return RelationshipType.valueOf(name.substring(0, bracket).trim().toUpperCase(Locale.ROOT)).name();
+            } catch (IllegalArgumentException e) {
+                // not a relationship
+            }
+        }
+        return name;
+    }
+
+    private static class Tally {
+        private int numConstraints;
+        private int numChocoConstraints;
+        private int numPropagators;
+        private int numChocoVars;
+        private long domainSize;
+
+        Entry toEntry(String construct) {
+            return Entry.builder()
+                    .construct(construct)
+                    .numConstraints(numConstraints)
+                    .numChocoConstraints(numChocoConstraints)
+                    .numPropagators(numPropagators)
+                    .numChocoVars(numChocoVars)
+                    .domainSize(domainSize)
+                    .build();
+        }
+    }
+
+    public int getNumChocoConstraints() {
+        return entries.stream().mapToInt(Entry::getNumChocoConstraints).sum();
+    }
+
+    public int getNumChocoVars() {
+        return entries.stream().mapToInt(Entry::getNumChocoVars).sum();
+    }
+
+    /**
+     * E.g., "MANDATORY:12/12/12/0/0;(shared):0/0/0/25/50", the entries separated by ";".
+     */
+    @Override
+    public String toString() {
+        return entries.stream().map(Entry::toString).collect(Collectors.joining(";"));
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+
+/**
+ * The result of the consistency check of a knowledge base.
+ * UNKNOWN if the solver stopped at a limit before finding a solution or proving there is none.
+ */
+public enum Consistency {
+    CONSISTENT("true"),
+    INCONSISTENT("false"),
+    UNKNOWN("UNKNOWN(timeout)");
+
+    @Getter
+    private final String label;
+
+    Consistency(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
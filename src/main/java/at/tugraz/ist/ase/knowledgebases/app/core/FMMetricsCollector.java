@@ -0,0 +1,165 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.fm.core.Feature;
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.core.Relationship;
+import at.tugraz.ist.ase.fm.core.RelationshipType;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Collects the counts and tree metrics of a feature model in one pass over its features,
+ * relationships and constraints, so that the cost is linear in the size of the feature model.
+ * <p>
+ * The parent of a relationship is its feature coming first in breadth-first order,
+ * which doesn't depend on the side on which the parser puts the parent.
+ */
+@Getter
+class FMMetricsCollector {
+
+    private final Map<RelationshipType, Integer> numRelationshipsPerType = new EnumMap<>(RelationshipType.class);
+    private int treeDepth;
+    private int numLeaves;
+    private int maxBranchingFactor;
+    private double avgBranchingFactor;
+    /**
+     * The number of children -> the number of features with that many children, only for non-leaf features.
+     */
+    private final SortedMap<Integer, Integer> branchingFactors = new TreeMap<>();
+    private int numCTCFeatures;
+    private double avgGroupSize;
+    private int maxGroupSize;
+    /**
+     * The index of each feature's parent in breadth-first order, -1 for the root.
+     */
+    private final int[] parents;
+    /**
+     * Whether a feature is the child of an OPTIONAL relationship.
+     */
+    private final boolean[] optional;
+
+    FMMetricsCollector(@NonNull FeatureModel fm) {
+        List<Feature> features = fm.getBfFeatures();
+        Map<Feature, Integer> indexes = new HashMap<>(features.size() * 2);
+        for (int i = 0; i < features.size(); i++) {
+            indexes.put(features.get(i), i);
+        }
+
+        // the parents' indexes and the number of children of each feature
+        parents = new int[features.size()];
+        optional = new boolean[features.size()];
+        int[] numChildren = new int[features.size()];
+        Arrays.fill(parents, -1);
+
+        int numGroups = 0;
+        long sumGroupSizes = 0;
+        for (Relationship relationship : fm.getRelationships()) {
+            count(relationship.getType());
+
+            List<Integer> members = members(indexes, relationship);
+            int parent = members.stream().mapToInt(Integer::intValue).min().orElse(-1);
+
+            int size = 0;
+            for (int child : members) {
+                if (child != parent) {
+                    parents[child] = parent;
+                    optional[child] = relationship.getType() == RelationshipType.OPTIONAL;
+                    numChildren[parent]++;
+                    size++;
+                }
+            }
+
+            if (relationship.getType() == RelationshipType.ALTERNATIVE || relationship.getType() == RelationshipType.OR) {
+                numGroups++;
+                sumGroupSizes += size;
+                maxGroupSize = Math.max(maxGroupSize, size);
+            }
+        }
+
+        Set<Feature> ctcFeatures = new HashSet<>();
+        for (Relationship constraint : fm.getConstraints()) {
+            count(constraint.getType());
+
+            if (constraint.getLeftSide() != null) {
+                ctcFeatures.add(constraint.getLeftSide());
+            }
+            if (constraint.getRightSide() != null) {
+                ctcFeatures.addAll(constraint.getRightSide());
+            }
+        }
+
+        // parents come before their children in breadth-first order, so one pass computes the depths
+        int[] depths = new int[features.size()];
+        int numParents = 0;
+        long sumChildren = 0;
+        for (int i = 0; i < features.size(); i++) {
+            if (parents[i] >= 0) {
+                depths[i] = depths[parents[i]] + 1;
+                treeDepth = Math.max(treeDepth, depths[i]);
+            }
+
+            if (numChildren[i] == 0) {
+                numLeaves++;
+            } else {
+                numParents++;
+                sumChildren += numChildren[i];
+                branchingFactors.merge(numChildren[i], 1, Integer::sum);
+                maxBranchingFactor = Math.max(maxBranchingFactor, numChildren[i]);
+            }
+        }
+
+        avgBranchingFactor = numParents == 0 ? 0 : (double) sumChildren / numParents;
+        avgGroupSize = numGroups == 0 ? 0 : (double) sumGroupSizes / numGroups;
+        numCTCFeatures = ctcFeatures.size();
+    }
+
+    int getNumRelationships(RelationshipType type) {
+        return numRelationshipsPerType.getOrDefault(type, 0);
+    }
+
+    private void count(RelationshipType type) {
+        if (type != null) {
+            numRelationshipsPerType.merge(type, 1, Integer::sum);
+        }
+    }
+
+    private static List<Integer> members(Map<Feature, Integer> indexes, Relationship relationship) {
+        List<Integer> members = new ArrayList<>();
+        int left = indexOf(indexes, relationship.getLeftSide());
+        if (left >= 0) {
+            members.add(left);
+        }
+        if (relationship.getRightSide() != null) {
+            for (Feature feature : relationship.getRightSide()) {
+                int index = indexOf(indexes, feature);
+                if (index >= 0) {
+                    members.add(index);
+                }
+            }
+        }
+        return members;
+    }
+
+    private static int indexOf(Map<Feature, Integer> indexes, Feature feature) {
+        return feature == null ? -1 : indexes.getOrDefault(feature, -1);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.core.RelationshipType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.SortedMap;
+
+/**
+ * The structural statistics of a feature model.
+ */
+@Getter
+@Builder
+public class FMStatistics implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 2L;
+
+    private final double ctcRatio;
+    private final int numFeatures;
+    private final int numRelationships;
+    private final int numConstraints;
+    private final int numMandatory;
+    private final int numOptional;
+    private final int numAlternative;
+    private final int numOr;
+    private final int numRequires;
+    private final int numExcludes;
+
+    /**
+     * The depth of the feature tree, 0 for a feature model with only the root feature.
+     */
+    private final int treeDepth;
+    private final int numLeaves;
+    private final int maxBranchingFactor;
+    /**
+     * The average number of children of the non-leaf features.
+     */
+    private final double avgBranchingFactor;
+    /**
+     * The number of children -> the number of features with that many children, only for non-leaf features.
+     */
+    private final SortedMap<Integer, Integer> branchingFactors;
+    /**
+     * The number of distinct features involved in cross-tree constraints.
+     */
+    private final int numCTCFeatures;
+    /**
+     * The number of relationships and cross-tree constraints per feature.
+     */
+    private final double constraintDensity;
+    /**
+     * The average and maximum number of features of the ALTERNATIVE and OR groups.
+     */
+    private final double avgGroupSize;
+    private final int maxGroupSize;
+
+    /**
+     * Extracts the structural statistics of the given feature model in one pass, see {@link FMMetricsCollector}.
+     * @param numKBConstraints the number of constraints of the knowledge base built from the feature model,
+     *                         used to calculate the CTC ratio
+     */
+    public static FMStatistics of(@NonNull FeatureModel fm, int numKBConstraints) {
+        FMMetricsCollector metrics = new FMMetricsCollector(fm);
+
+        return FMStatistics.builder()
+                .ctcRatio((double)fm.getNumOfConstraints() / numKBConstraints)
+                .numFeatures(fm.getNumOfFeatures())
+                .numRelationships(fm.getNumOfRelationships())
+                .numConstraints(fm.getNumOfConstraints())
+                .numMandatory(metrics.getNumRelationships(RelationshipType.MANDATORY))
+                .numOptional(metrics.getNumRelationships(RelationshipType.OPTIONAL))
+                .numAlternative(metrics.getNumRelationships(RelationshipType.ALTERNATIVE))
+                .numOr(metrics.getNumRelationships(RelationshipType.OR))
+                .numRequires(metrics.getNumRelationships(RelationshipType.REQUIRES))
+                .numExcludes(metrics.getNumRelationships(RelationshipType.EXCLUDES))
+                .treeDepth(metrics.getTreeDepth())
+                .numLeaves(metrics.getNumLeaves())
+                .maxBranchingFactor(metrics.getMaxBranchingFactor())
+                .avgBranchingFactor(metrics.getAvgBranchingFactor())
+                .branchingFactors(metrics.getBranchingFactors())
+                .numCTCFeatures(metrics.getNumCTCFeatures())
+                .constraintDensity(fm.getNumOfFeatures() == 0 ? 0
+                        : (double)(fm.getNumOfRelationships() + fm.getNumOfConstraints()) / fm.getNumOfFeatures())
+                .avgGroupSize(metrics.getAvgGroupSize())
+                .maxGroupSize(metrics.getMaxGroupSize())
+                .build();
+    }
+
+    /**
+     * Returns the branching factor distribution as "children:features" pairs separated by spaces, e.g. "1:3 4:2".
+     */
+    public String getBranchingFactorsAsString() {
+        StringBuilder result = new StringBuilder();
+        branchingFactors.forEach((children, features) -> {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(children).append(':').append(features);
+        });
+        return result.toString();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A heap budget shared by the tasks in flight. A task is admitted only when its estimated heap usage
+ * fits into the remaining budget, and gives its share back as soon as its statistics are calculated.
+ * A task estimated larger than the whole budget is admitted alone.
+ * <p>
+ * Tasks are admitted by the thread submitting them, in submission order.
+ */
+public class MemoryBudget {
+
+    @Getter
+    private final long budgetBytes;
+    private long availableBytes;
+
+    public MemoryBudget(long budgetBytes) {
+        checkArgument(budgetBytes > 0, "The heap budget must be positive.");
+
+        this.budgetBytes = budgetBytes;
+        this.availableBytes = budgetBytes;
+    }
+
+    /**
+     * Blocks until the given task's estimated heap usage fits into the budget,
+     * and returns the task which gives the usage back when it finishes.
+     */
+    public <T> Callable<T> admit(long estimatedBytes, @NonNull Callable<T> task) throws InterruptedException {
+        long admitted = acquire(estimatedBytes);
+        return () -> {
+            try {
+                return task.call();
+            } finally {
+                release(admitted);
+            }
+        };
+    }
+
+    public synchronized long getAvailableBytes() {
+        return availableBytes;
+    }
+
+    private synchronized long acquire(long estimatedBytes) throws InterruptedException {
+        long bytes = Math.min(Math.max(estimatedBytes, 0), budgetBytes);
+        while (availableBytes < bytes) {
+            wait();
+        }
+        availableBytes -= bytes;
+        return bytes;
+    }
+
+    private synchronized void release(long bytes) {
+        availableBytes += bytes;
+        notifyAll();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Calculates statistics records on a bounded pool of workers
+ * and hands them to a single writer in submission order.
+ * <p>
+ * With one thread, the tasks are executed directly on the caller's thread.
+ * With more threads, at most 2 * threads tasks are in flight at the same time,
+ * i.e., {@link #submit(Callable)} blocks until the oldest task is written.
+ * Hence, the output is identical to the sequential run.
+ * <p>
+ * In the largest-first mode with more threads, the tasks are only collected by submit, and {@link #finish()}
+ * dispatches them by descending expected cost, so that a few expensive tasks submitted last don't leave
+ * the other workers idle at the end of the run. The records are still written in submission order,
+ * the finished records of later tasks wait until the earlier ones are written. As in the default mode,
+ * at most 2 * threads tasks are in flight, plus the next one to write.
+ */
+public class OrderedStatisticsPipeline implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(StatisticsRecord record) throws IOException;
+    }
+
+    /**
+     * Creates a task when it is dispatched, e.g., after admitting it within a heap budget.
+     */
+    @FunctionalInterface
+    public interface TaskFactory {
+        Callable<StatisticsRecord> create() throws IOException;
+    }
+
+    private record Job(int position, long cost, TaskFactory factory) {
+    }
+
+    private final RecordWriter writer;
+    private final ExecutorService executor;
+    private final Deque<Future<StatisticsRecord>> pending = new ArrayDeque<>();
+    private final int maxPending;
+    private final boolean largestFirst;
+    private final List<Job> jobs = new ArrayList<>();
+
+    public OrderedStatisticsPipeline(int threads, @NonNull RecordWriter writer) {
+        this(threads, false, writer);
+    }
+
+    /**
+     * @param largestFirst whether the tasks are dispatched by descending expected cost, see {@link #submit(long, TaskFactory)}
+     */
+    public OrderedStatisticsPipeline(int threads, boolean largestFirst, @NonNull RecordWriter writer) {
+        checkArgument(threads > 0, "The number of threads must be positive.");
+
+        this.writer = writer;
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        this.maxPending = threads * 2;
+        this.largestFirst = largestFirst && executor != null;
+    }
+
+    /**
+     * Submits a task calculating the statistics of one knowledge base.
+     * Blocks while the pipeline is full and writes finished records in order.
+     */
+    public void submit(@NonNull Callable<StatisticsRecord> task) throws IOException, FeatureModelParserException {
+        if (largestFirst) {
+            submit(0, () -> task);
+            return;
+        }
+        if (executor == null) {
+            writer.write(call(task));
+            return;
+        }
+
+        pending.addLast(executor.submit(task));
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Submits a task with its expected cost, in any unit. In the largest-first mode, the task is only collected
+     * and created when {@link #finish()} dispatches it, otherwise it is created and submitted right away.
+     */
+    public void submit(long cost, @NonNull TaskFactory factory) throws IOException, FeatureModelParserException {
+        if (largestFirst) {
+            jobs.add(new Job(jobs.size(), cost, factory));
+        } else {
+            submit(factory.create());
+        }
+    }
+
+    /**
+     * Waits for all submitted tasks and writes their records.
+     */
+    public void finish() throws IOException, FeatureModelParserException {
+        if (!jobs.isEmpty()) {
+            dispatchLargestFirst();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Dispatches the collected tasks by descending expected cost, and writes their records in submission order.
+     * At most maxPending tasks are dispatched and not yet written, plus the next task to write, which is dispatched
+     * out of turn when the window is full, so that the finished records waiting for an earlier one stay bounded.
+     */
+    private void dispatchLargestFirst() throws IOException, FeatureModelParserException {
+        List<Job> byPosition = new ArrayList<>(jobs);
+        List<Job> order = new ArrayList<>(jobs);
+        order.sort(Comparator.comparingLong(Job::cost).reversed().thenComparingInt(Job::position));
+        jobs.clear();
+
+        List<Future<StatisticsRecord>> futures = new ArrayList<>(Collections.nCopies(byPosition.size(), null));
+        int next = 0;
+        int inFlight = 0;
+        for (Job job : order) {
+            if (futures.get(job.position()) != null) {
+                continue; // dispatched out of turn
+            }
+            while (inFlight >= maxPending) {
+                if (futures.get(next) == null) {
+                    futures.set(next, executor.submit(byPosition.get(next).factory().create()));
+                    inFlight++;
+                }
+                write(futures.get(next++));
+                inFlight--;
+            }
+            futures.set(job.position(), executor.submit(job.factory().create()));
+            inFlight++;
+            // writes the finished records, as far as the earlier ones are written
+            while (next < futures.size() && futures.get(next) != null && futures.get(next).isDone()) {
+                write(futures.get(next++));
+                inFlight--;
+            }
+        }
+        while (next < futures.size()) {
+            write(futures.get(next++));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeNext() throws IOException, FeatureModelParserException {
+        write(pending.removeFirst());
+    }
+
+    private void write(Future<StatisticsRecord> future) throws IOException, FeatureModelParserException {
+        try {
+            writer.write(future.get());
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the statistics", e);
+        }
+    }
+
+    private static StatisticsRecord call(Callable<StatisticsRecord> task) throws IOException, FeatureModelParserException {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Rethrows the checked exceptions of a task as they are, wraps the others.
+     */
+    private static IOException rethrow(Throwable cause) throws IOException, FeatureModelParserException {
+        if (cause instanceof IOException ex) {
+            throw ex;
+        } else if (cause instanceof FeatureModelParserException ex) {
+            throw ex;
+        } else if (cause instanceof RuntimeException ex) {
+            throw ex;
+        } else if (cause instanceof Error ex) {
+            throw ex;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+
+/**
+ * The phases of calculating the statistics of a knowledge base.
+ */
+public enum Phase {
+    PARSE("Parse"),
+    BUILD("KB build"),
+    SOLVE("Solve"),
+    ANALYZE("Solution space"),
+    WRITE("Write");
+
+    @Getter
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The wall-clock time, the CPU time and the allocated bytes of one phase.
+ * CPU time and allocated bytes are -1 if the JVM doesn't support measuring them.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PhaseTiming implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+}
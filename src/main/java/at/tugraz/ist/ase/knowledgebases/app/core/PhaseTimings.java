@@ -0,0 +1,95 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.NonNull;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measures the phases of calculating the statistics of one knowledge base.
+ * The measurements are taken on the current thread, so a phase must run on one thread,
+ * unless the usage of its other threads is set afterwards (see {@link #setThreadUsage}).
+ */
+public class PhaseTimings implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @FunctionalInterface
+    public interface PhaseAction<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final EnumMap<Phase, PhaseTiming> timings = new EnumMap<>(Phase.class);
+    private Phase currentPhase;
+
+    /**
+     * Runs the given action and records its timing under the given phase.
+     */
+    public <T, E extends Exception> T measure(@NonNull Phase phase, @NonNull PhaseAction<T, E> action) throws E {
+        currentPhase = phase;
+        long wall = System.nanoTime();
+        long cpu = currentThreadCpuTime();
+        long allocated = currentThreadAllocatedBytes();
+
+        try {
+            return action.run();
+        } finally {
+            long cpuTime = cpu < 0 ? -1 : currentThreadCpuTime() - cpu;
+            long allocatedBytes = allocated < 0 ? -1 : currentThreadAllocatedBytes() - allocated;
+
+            timings.put(phase, new PhaseTiming(System.nanoTime() - wall, cpuTime, allocatedBytes));
+        }
+    }
+
+    /**
+     * Replaces the CPU time and the allocated bytes of the given measured phase, e.g., by the sums over the threads
+     * the phase ran on. The wall-clock time is kept.
+     */
+    void setThreadUsage(@NonNull Phase phase, long cpuNanos, long allocatedBytes) {
+        PhaseTiming timing = timings.get(phase);
+        if (timing != null) {
+            timings.put(phase, new PhaseTiming(timing.getWallNanos(), cpuNanos, allocatedBytes));
+        }
+    }
+
+    /**
+     * Returns the phase started last, null if no phase was started.
+     */
+    public Phase getCurrentPhase() {
+        return currentPhase;
+    }
+
+    public Map<Phase, PhaseTiming> asMap() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    static long currentThreadCpuTime() {
+        if (threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled()) {
+            return threadMXBean.getCurrentThreadCpuTime();
+        }
+        return -1;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The failure of calculating the statistics of one knowledge base.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProcessingError implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The phase which failed, null if the failure happened before the first phase.
+     */
+    private final Phase phase;
+    private final String exception;
+    private final String message;
+    private final long elapsedNanos;
+
+    public static ProcessingError of(Phase phase, @NonNull Throwable throwable, long elapsedNanos) {
+        return new ProcessingError(phase, throwable.getClass().getName(), throwable.getMessage(), elapsedNanos);
+    }
+}
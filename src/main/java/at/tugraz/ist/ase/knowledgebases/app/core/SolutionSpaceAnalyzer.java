@@ -0,0 +1,252 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.fm.core.Feature;
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import lombok.NonNull;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.variables.BoolVar;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Analyzes the solution space of a feature model on the Choco model of its knowledge base:
+ * the number of configurations, and the core, dead and false-optional features.
+ * <p>
+ * All checks reuse the one solver of the knowledge base, the constraints of a check
+ * are posted before and unposted after solving, so the knowledge base is built only once.
+ * A found solution is kept as a witness: a feature selected in it isn't dead, a feature deselected
+ * in it isn't core, so most features don't need a check of their own.
+ * <p>
+ * Each metric has its own time budget. A feature which couldn't be checked within the budget
+ * is counted as neither core, dead nor false-optional, see {@link SolutionSpaceStatistics}.
+ */
+public class SolutionSpaceAnalyzer {
+
+    /**
+     * The number of solutions of the counting which are kept as witnesses,
+     * more would slow down the counting of large solution spaces.
+     */
+    private static final int MAX_COUNTED_WITNESSES = 1000;
+
+    private final Model model;
+    private final Solver solver;
+    private final long timeLimitMillis;
+
+    /**
+     * The Choco variables of the features in breadth-first order, null if a feature has no variable.
+     */
+    private final BoolVar[] vars;
+    private final int[] parents;
+    private final boolean[] optional;
+
+    private final boolean[] selectedInWitness;
+    private final boolean[] deselectedInWitness;
+    /**
+     * Whether a witness has the feature's parent selected and the feature deselected.
+     */
+    private final boolean[] parentWithoutFeatureInWitness;
+
+    /**
+     * @param kb the knowledge base built from the given feature model
+     * @param timeLimitMillis the time budget of each metric in milliseconds
+     */
+    public SolutionSpaceAnalyzer(@NonNull KB kb, @NonNull FeatureModel fm, long timeLimitMillis) {
+        checkArgument(timeLimitMillis > 0, "The time limit of the solution space metrics must be positive.");
+
+        this.model = kb.getModelKB();
+        this.solver = model.getSolver();
+        this.timeLimitMillis = timeLimitMillis;
+
+        Map<String, BoolVar> varsByName = new HashMap<>();
+        for (BoolVar var : model.retrieveBoolVars()) {
+            varsByName.putIfAbsent(var.getName(), var);
+        }
+        List<Feature> features = fm.getBfFeatures();
+        vars = new BoolVar[features.size()];
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            vars[i] = varsByName.getOrDefault(feature.getName(), varsByName.get(feature.getId()));
+        }
+
+        FMMetricsCollector tree = new FMMetricsCollector(fm);
+        parents = tree.getParents();
+        optional = tree.getOptional();
+
+        selectedInWitness = new boolean[vars.length];
+        deselectedInWitness = new boolean[vars.length];
+        parentWithoutFeatureInWitness = new boolean[vars.length];
+    }
+
+    public SolutionSpaceStatistics analyze() {
+        SolutionSpaceStatistics.SolutionSpaceStatisticsBuilder builder = SolutionSpaceStatistics.builder();
+        countConfigurations(builder);
+
+        int numAnalyzed = 0;
+        for (BoolVar var : vars) {
+            if (var != null) {
+                numAnalyzed++;
+            }
+        }
+        builder.numAnalyzedFeatures(numAnalyzed);
+
+        // dead features first, they exclude false-optional candidates
+        boolean[] dead = new boolean[vars.length];
+        long deadline = deadline();
+        int numDeadChecked = 0;
+        int numDead = 0;
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i] == null) {
+                continue;
+            }
+            Boolean satisfiable = selectedInWitness[i] ? Boolean.TRUE : isSatisfiable(deadline, model.arithm(vars[i], "=", 1));
+            if (satisfiable != null) {
+                numDeadChecked++;
+                if (!satisfiable) {
+                    dead[i] = true;
+                    numDead++;
+                }
+            }
+        }
+        builder.numDeadFeatures(numDead).numDeadChecked(numDeadChecked);
+
+        deadline = deadline();
+        int numCoreChecked = 0;
+        int numCore = 0;
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i] == null) {
+                continue;
+            }
+            Boolean satisfiable = deselectedInWitness[i] ? Boolean.TRUE : isSatisfiable(deadline, model.arithm(vars[i], "=", 0));
+            if (satisfiable != null) {
+                numCoreChecked++;
+                if (!satisfiable) {
+                    numCore++;
+                }
+            }
+        }
+        builder.numCoreFeatures(numCore).numCoreChecked(numCoreChecked);
+
+        // a false-optional feature is an optional feature which is selected whenever its parent is selected
+        deadline = deadline();
+        int numOptional = 0;
+        int numFalseOptionalChecked = 0;
+        int numFalseOptional = 0;
+        for (int i = 0; i < vars.length; i++) {
+            int parent = parents[i];
+            if (!optional[i] || parent < 0 || vars[i] == null || vars[parent] == null) {
+                continue;
+            }
+            numOptional++;
+
+            Boolean satisfiable = parentWithoutFeatureInWitness[i] || dead[parent] ? Boolean.TRUE
+                    : isSatisfiable(deadline, model.arithm(vars[parent], "=", 1), model.arithm(vars[i], "=", 0));
+            if (satisfiable != null) {
+                numFalseOptionalChecked++;
+                if (!satisfiable) {
+                    numFalseOptional++;
+                }
+            }
+        }
+        builder.numOptionalFeatures(numOptional)
+                .numFalseOptionalFeatures(numFalseOptional)
+                .numFalseOptionalChecked(numFalseOptionalChecked);
+
+        return builder.build();
+    }
+
+    /**
+     * Enumerates the configurations within the time budget.
+     */
+    private void countConfigurations(SolutionSpaceStatistics.SolutionSpaceStatisticsBuilder builder) {
+        prepare(timeLimitMillis);
+
+        long count = 0;
+        try {
+            while (solver.solve()) {
+                count++;
+                if (count <= MAX_COUNTED_WITNESSES) {
+                    recordWitness();
+                }
+            }
+            builder.numConfigurations(count).configurationsExact(!solver.isStopCriterionMet());
+        } finally {
+            prepare(0);
+        }
+    }
+
+    /**
+     * Checks whether the knowledge base together with the given constraints has a solution.
+     * @return null if the deadline was reached before the check finished
+     */
+    private Boolean isSatisfiable(long deadline, Constraint... constraints) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+            return null;
+        }
+
+        prepare(remainingMillis);
+        for (Constraint constraint : constraints) {
+            constraint.post();
+        }
+        try {
+            if (solver.solve()) {
+                recordWitness();
+                return true;
+            }
+            return solver.isStopCriterionMet() ? null : false;
+        } finally {
+            prepare(0);
+            for (Constraint constraint : constraints) {
+                model.unpost(constraint);
+            }
+        }
+    }
+
+    /**
+     * Resets the search of the solver and limits the next one to the given time, 0 for no limit.
+     */
+    private void prepare(long limitMillis) {
+        solver.reset();
+        solver.removeAllStopCriteria();
+        if (limitMillis > 0) {
+            solver.limitTime(limitMillis);
+        }
+    }
+
+    private void recordWitness() {
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i] == null) {
+                continue;
+            }
+            boolean selected = vars[i].getValue() == 1;
+            if (selected) {
+                selectedInWitness[i] = true;
+            } else {
+                deselectedInWitness[i] = true;
+                if (parents[i] >= 0 && vars[parents[i]] != null && vars[parents[i]].getValue() == 1) {
+                    parentWithoutFeatureInWitness[i] = true;
+                }
+            }
+        }
+    }
+
+    private long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+    }
+}
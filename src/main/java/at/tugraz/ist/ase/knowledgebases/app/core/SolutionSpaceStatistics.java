@@ -0,0 +1,57 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The statistics of the solution space of a feature model, see {@link SolutionSpaceAnalyzer}.
+ * Each metric has its own time budget, so it comes with its achieved precision:
+ * the number of configurations is exact or a lower bound, and the numbers of core, dead and false-optional
+ * features are exact if all features were checked, otherwise lower bounds.
+ */
+@Getter
+@Builder
+public class SolutionSpaceStatistics implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long numConfigurations;
+    private final boolean configurationsExact;
+
+    /**
+     * The number of features with a variable in the Choco model, i.e., the features which were analyzed.
+     */
+    private final int numAnalyzedFeatures;
+    private final int numCoreFeatures;
+    private final int numCoreChecked;
+    private final int numDeadFeatures;
+    private final int numDeadChecked;
+
+    /**
+     * The number of children of OPTIONAL relationships, which can be false-optional.
+     */
+    private final int numOptionalFeatures;
+    private final int numFalseOptionalFeatures;
+    private final int numFalseOptionalChecked;
+
+    /**
+     * Returns whether all metrics are exact.
+     */
+    public boolean isComplete() {
+        return configurationsExact
+                && numCoreChecked == numAnalyzedFeatures
+                && numDeadChecked == numAnalyzedFeatures
+                && numFalseOptionalChecked == numOptionalFeatures;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.chocosolver.solver.Solver;
+
+/**
+ * Limits of the consistency check of one knowledge base. A limit of 0 means no limit.
+ * The solution space metrics have a time limit of their own.
+ */
+@Getter
+@Builder
+@ToString
+public class SolveLimits {
+    public static final SolveLimits NONE = SolveLimits.builder().build();
+
+    private final long timeLimitMillis;
+    private final long nodeLimit;
+    private final long backtrackLimit;
+    /**
+     * The time budget of each solution space metric, see {@link SolutionSpaceAnalyzer}.
+     */
+    @Builder.Default
+    private final long solutionSpaceTimeLimitMillis = 10_000;
+
+    /**
+     * Adds the limits as stop criteria to the given solver.
+     */
+    public void apply(@NonNull Solver solver) {
+        if (timeLimitMillis > 0) {
+            solver.limitTime(timeLimitMillis);
+        }
+        if (nodeLimit > 0) {
+            solver.limitNode(nodeLimit);
+        }
+        if (backtrackLimit > 0) {
+            solver.limitBacktrack(backtrackLimit);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.chocosolver.solver.Solver;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The measures of the solver after the consistency check.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SolverMeasures implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long nodes;
+    private final long backtracks;
+    private final long fails;
+    private final double solveTimeSeconds;
+
+    public static SolverMeasures of(@NonNull Solver solver) {
+        return new SolverMeasures(solver.getNodeCount(), solver.getBackTrackCount(),
+                solver.getFailCount(), solver.getTimeCount());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ParallelPortfolio;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.solver.search.loop.monitors.IMonitorClose;
+import org.chocosolver.solver.search.loop.monitors.IMonitorInitialize;
+import org.chocosolver.solver.search.loop.monitors.ISearchMonitor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of one knowledge base.
+ * A record is computed by a worker and written by the single output writer,
+ * so it only holds the extracted numbers, no references to the knowledge base itself.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class StatisticsRecord implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int counter;
+    /**
+     * The input of the record, i.e., the path of the feature model file or the name of the built-in knowledge base.
+     */
+    private final String input;
+    private final String name;
+    private final String source;
+    /**
+     * The statistics of the knowledge base, null if it wasn't built, see {@link StatisticsSelection#CHOCO}.
+     */
+    private final Integer numVariables;
+    private final Integer numConstraints;
+    private final Integer numChocoVars;
+    private final Integer numChocoConstraints;
+    /**
+     * The Choco model per construct of the knowledge base, null if it wasn't profiled,
+     * see {@link StatisticsSelection#CHOCO_PROFILE}.
+     */
+    private final ChocoModelProfile chocoProfile;
+
+    /**
+     * The consistency and the solver's measures, null if it wasn't checked, see {@link StatisticsSelection#CONSISTENCY}.
+     */
+    private final Consistency consistency;
+    private final SolverMeasures solverMeasures;
+
+    /**
+     * Statistics of the feature model, null if the knowledge base is not a feature model.
+     */
+    private final FMStatistics fmStatistics;
+
+    /**
+     * Statistics of the solution space of the feature model, null if they weren't calculated,
+     * see {@link StatisticsSelection#SOLUTION_SPACE}.
+     */
+    private final SolutionSpaceStatistics solutionSpace;
+
+    /**
+     * The failure of calculating the statistics, null if they were calculated.
+     */
+    private final ProcessingError error;
+
+    /**
+     * Timings of the phases calculating the statistics, empty for cached records.
+     */
+    private final PhaseTimings timings;
+
+    /**
+     * Extracts the general statistics of the given knowledge base, without checking its consistency.
+     */
+    public static StatisticsRecordBuilder of(int counter, @NonNull KB kb) {
+        return StatisticsRecord.builder()
+                .counter(counter)
+                .countsOf(kb);
+    }
+
+    public static class StatisticsRecordBuilder {
+        /**
+         * Adds the name, the source and the numbers of variables and constraints of the given knowledge base.
+         */
+        public StatisticsRecordBuilder countsOf(@NonNull KB kb) {
+            return name(kb.getName())
+                    .source(kb.getSource())
+                    .numVariables(kb.getNumVariables())
+                    .numConstraints(kb.getNumConstraints())
+                    .numChocoVars(kb.getNumChocoVars())
+                    .numChocoConstraints(kb.getNumChocoConstraints());
+        }
+
+        /**
+         * Checks the consistency of the given knowledge base within the given limits,
+         * and adds it together with the solver's measures. Solving is measured as {@link Phase#SOLVE}.
+         */
+        public StatisticsRecordBuilder consistencyOf(@NonNull KB kb, @NonNull SolveLimits limits,
+                                                     @NonNull PhaseTimings timings) {
+            Solver solver = kb.getModelKB().getSolver();
+            limits.apply(solver);
+
+            boolean solved = timings.measure(Phase.SOLVE, solver::solve);
+            Consistency consistency = solved ? Consistency.CONSISTENT
+                    : solver.isStopCriterionMet() ? Consistency.UNKNOWN : Consistency.INCONSISTENT;
+
+            return consistency(consistency)
+                    .solverMeasures(SolverMeasures.of(solver));
+        }
+
+        /**
+         * Checks the consistency of a knowledge base with Choco's parallel portfolio.
+         * Each of the given copies of the knowledge base is solved on its own thread with a different search strategy,
+         * and the first copy finding a solution or proving that there is none stops the others.
+         * The solver's measures are those of this copy. The CPU time and the allocated bytes of {@link Phase#SOLVE}
+         * are the sums over the threads of all copies.
+         */
+        public StatisticsRecordBuilder consistencyOf(@NonNull List<? extends KB> copies, @NonNull SolveLimits limits,
+                                                     @NonNull PhaseTimings timings) {
+            if (copies.size() == 1) {
+                return consistencyOf(copies.get(0), limits, timings);
+            }
+
+            ParallelPortfolio portfolio = new ParallelPortfolio();
+            ThreadUsage usage = new ThreadUsage();
+            for (KB kb : copies) {
+                limits.apply(kb.getModelKB().getSolver());
+                kb.getModelKB().getSolver().plugMonitor(usage.monitor());
+                portfolio.addModel(kb.getModelKB());
+            }
+
+            boolean solved = timings.measure(Phase.SOLVE, portfolio::solve);
+            timings.setThreadUsage(Phase.SOLVE, usage.cpuNanos(), usage.allocatedBytes());
+            // without a solution, a copy which searched the whole space proves the inconsistency
+            Model winner = solved ? portfolio.getBestModel()
+                    : portfolio.getModels().stream()
+                            .filter(model -> model.getSolver().getSearchState() == SearchState.TERMINATED)
+                            .findFirst().orElse(null);
+            Consistency consistency = solved ? Consistency.CONSISTENT
+                    : winner != null ? Consistency.INCONSISTENT : Consistency.UNKNOWN;
+
+            Solver solver = (winner != null ? winner : portfolio.getModels().get(0)).getSolver();
+            return consistency(consistency)
+                    .solverMeasures(SolverMeasures.of(solver));
+        }
+    }
+
+    /**
+     * Sums the CPU time and the allocated bytes of the threads solving the copies of a portfolio.
+     * Each copy is measured on its own thread, from the initialization of its search to its end.
+     */
+    private static class ThreadUsage {
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        ISearchMonitor monitor() {
+            return new Monitor();
+        }
+
+        /**
+         * @return the sum of the copies' CPU times, -1 if the JVM doesn't support measuring them
+         */
+        long cpuNanos() {
+            return cpuNanos.get() < 0 ? -1 : cpuNanos.get();
+        }
+
+        long allocatedBytes() {
+            return allocatedBytes.get() < 0 ? -1 : allocatedBytes.get();
+        }
+
+        private class Monitor implements IMonitorInitialize, IMonitorClose {
+            private long cpu;
+            private long allocated;
+
+            @Override
+            public void beforeInitialize() {
+                cpu = PhaseTimings.currentThreadCpuTime();
+                allocated = PhaseTimings.currentThreadAllocatedBytes();
+            }
+
+            @Override
+            public void afterClose() {
+                cpuNanos.accumulateAndGet(cpu < 0 ? -1 : PhaseTimings.currentThreadCpuTime() - cpu, ThreadUsage::sum);
+                allocatedBytes.accumulateAndGet(allocated < 0 ? -1 : PhaseTimings.currentThreadAllocatedBytes() - allocated,
+                        ThreadUsage::sum);
+            }
+        }
+
+        /**
+         * Adds two measurements, an unsupported one (-1) makes the sum unsupported.
+         */
+        private static long sum(long a, long b) {
+            return a < 0 || b < 0 ? -1 : a + b;
+        }
+    }
+
+    public boolean isFeatureModel() {
+        return fmStatistics != null;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
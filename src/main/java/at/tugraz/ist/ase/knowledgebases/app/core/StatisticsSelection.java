@@ -0,0 +1,69 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The kinds of statistics which can be requested.
+ * Only the work needed by the requested kinds is done, i.e., a feature model is only
+ * translated into an FMKB for CHOCO or CONSISTENCY, and only solved for CONSISTENCY.
+ */
+public enum StatisticsSelection {
+    /**
+     * Statistics of the feature model's structure, needs only parsing.
+     */
+    STRUCTURAL,
+    /**
+     * Numbers of variables and constraints of the knowledge base and its Choco model.
+     */
+    CHOCO,
+    /**
+     * The consistency of the knowledge base and the solver's measures.
+     */
+    CONSISTENCY,
+    /**
+     * The number of configurations and the core, dead and false-optional features of a feature model,
+     * see {@link SolutionSpaceAnalyzer}. Not selected by default, since it needs many solver runs.
+     */
+    SOLUTION_SPACE,
+    /**
+     * The Choco variables, constraints, propagators and domain sizes per construct of the knowledge base,
+     * see {@link ChocoModelProfile}. Not selected by default.
+     */
+    CHOCO_PROFILE;
+
+    /**
+     * Parses a comma-separated list of kinds, e.g., "structural,choco" or "consistency,solution-space,choco-profile".
+     */
+    public static Set<StatisticsSelection> parse(@NonNull String selection) {
+        Set<StatisticsSelection> kinds = EnumSet.noneOf(StatisticsSelection.class);
+        Arrays.stream(selection.split(","))
+                .map(String::trim)
+                .filter(kind -> !kind.isEmpty())
+                .forEach(kind -> kinds.add(StatisticsSelection.valueOf(kind.toUpperCase().replace('-', '_'))));
+
+        checkArgument(!kinds.isEmpty(), "At least one kind of statistics must be selected.");
+        return kinds;
+    }
+
+    /**
+     * Returns whether the knowledge base has to be built for the given kinds.
+     */
+    public static boolean needsKB(@NonNull Set<StatisticsSelection> kinds) {
+        return kinds.contains(CHOCO) || kinds.contains(CONSISTENCY) || kinds.contains(SOLUTION_SPACE)
+                || kinds.contains(CHOCO_PROFILE);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.core;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the phase timings of all knowledge bases of a run
+ * and prints the p50, p95 and maximum of each phase.
+ * Not thread-safe, is only used by the single writer.
+ */
+public class TimingReport {
+
+    private final Map<Phase, List<PhaseTiming>> timings = new EnumMap<>(Phase.class);
+
+    public void add(@NonNull Phase phase, @NonNull PhaseTiming timing) {
+        timings.computeIfAbsent(phase, p -> new ArrayList<>()).add(timing);
+    }
+
+    public void addAll(@NonNull PhaseTimings phaseTimings) {
+        phaseTimings.asMap().forEach(this::add);
+    }
+
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-10s %6s %12s %12s %12s %12s %12s %12s %14s %14s%n",
+                "Phase", "#KBs",
+                "wall p50", "wall p95", "wall max",
+                "CPU p50", "CPU p95", "CPU max",
+                "alloc p50", "alloc max"));
+
+        for (Map.Entry<Phase, List<PhaseTiming>> entry : timings.entrySet()) {
+            List<PhaseTiming> list = entry.getValue();
+            long[] wall = list.stream().mapToLong(PhaseTiming::getWallNanos).sorted().toArray();
+            long[] cpu = list.stream().mapToLong(PhaseTiming::getCpuNanos).sorted().toArray();
+            long[] allocated = list.stream().mapToLong(PhaseTiming::getAllocatedBytes).sorted().toArray();
+
+            table.append(String.format("%-10s %6d %12s %12s %12s %12s %12s %12s %14s %14s%n",
+                    entry.getKey().getLabel(), list.size(),
+                    millis(percentile(wall, 50)), millis(percentile(wall, 95)), millis(percentile(wall, 100)),
+                    millis(percentile(cpu, 50)), millis(percentile(cpu, 95)), millis(percentile(cpu, 100)),
+                    bytes(percentile(allocated, 50)), bytes(percentile(allocated, 100))));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the given sorted values.
+     */
+    static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    static String millis(long nanos) {
+        return nanos < 0 ? "n/a" : String.format("%.3f ms", nanos / 1_000_000.0);
+    }
+
+    static String bytes(long bytes) {
+        return bytes < 0 ? "n/a" : bytes + " B";
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.generator;
+
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelFormats;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Generates random feature models of a given size, e.g., for benchmarks and scale tests.
+ * <p>
+ * The tree is built breadth-first: each parent gets between one and {@code maxChildren} children,
+ * either as MANDATORY/OPTIONAL relationships or, with the probability {@code groupRatio},
+ * as one ALTERNATIVE or OR group. Features at {@code maxDepth} get no children; if the other features
+ * are used up, the parents are visited again and get further children, so the tree grows wider instead.
+ * Cross-tree constraints are random REQUIRES and EXCLUDES constraints between non-root features,
+ * the number of them follows the CTC ratio, i.e., #CTC / (#relationships + #CTC).
+ * <p>
+ * A parent has only one kind of children, so the feature model can be written in all formats
+ * with the same statistics: SXFM, FeatureIDE, Glencoe and FM4Conf.
+ * The same seed always generates the same feature model.
+ */
+@Getter
+@Builder
+public class FeatureModelGenerator {
+
+    @Builder.Default
+    private final int numFeatures = 100;
+    @Builder.Default
+    private final int maxChildren = 5;
+    /**
+     * The maximum depth of a feature, the root has depth 0.
+     */
+    @Builder.Default
+    private final int maxDepth = Integer.MAX_VALUE;
+    /**
+     * The probability that the children of a parent form an ALTERNATIVE or OR group.
+     */
+    @Builder.Default
+    private final double groupRatio = 0.25;
+    /**
+     * The share of OR groups among the groups, the others are ALTERNATIVE groups.
+     */
+    @Builder.Default
+    private final double orRatio = 0.5;
+    /**
+     * The share of MANDATORY relationships among the relationships with one child, the others are OPTIONAL.
+     */
+    @Builder.Default
+    private final double mandatoryRatio = 0.5;
+    @Builder.Default
+    private final double ctcRatio = 0.2;
+    @Builder.Default
+    private final long seed = 42;
+
+    /**
+     * Generates the feature model in the SXFM format of SPLOT.
+     */
+    public String toSXFM() {
+        Model model = generate();
+        Node root = model.features.get(0);
+
+        StringBuilder sxfm = new StringBuilder();
+        sxfm.append("<feature_model name=\"").append(model.name).append("\">\n");
+        sxfm.append("<feature_tree>\n");
+        sxfm.append(":r ").append(root.id).append("(").append(root.id).append(")\n");
+        appendSXFM(sxfm, root, 1);
+        sxfm.append("</feature_tree>\n");
+
+        sxfm.append("<constraints>\n");
+        for (int i = 0; i < model.constraints.size(); i++) {
+            Constraint constraint = model.constraints.get(i);
+            sxfm.append("constraint_").append(i + 1).append(":~").append(constraint.left.id).append(" or ")
+                    .append(constraint.excludes ? "~" : "").append(constraint.right.id).append("\n");
+        }
+        sxfm.append("</constraints>\n");
+        sxfm.append("</feature_model>\n");
+
+        return sxfm.toString();
+    }
+
+    /**
+     * Generates the feature model in the XML format of FeatureIDE.
+     */
+    public String toFeatureIDE() {
+        Model model = generate();
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        xml.append("<featureModel>\n");
+        xml.append("\t<struct>\n");
+        appendFeatureIDE(xml, model.features.get(0), true, 2);
+        xml.append("\t</struct>\n");
+
+        xml.append("\t<constraints>\n");
+        for (Constraint constraint : model.constraints) {
+            xml.append("\t\t<rule>\n");
+            if (constraint.excludes) {
+                xml.append("\t\t\t<disj>\n")
+                        .append("\t\t\t\t<not>\n\t\t\t\t\t<var>").append(constraint.left.id).append("</var>\n\t\t\t\t</not>\n")
+                        .append("\t\t\t\t<not>\n\t\t\t\t\t<var>").append(constraint.right.id).append("</var>\n\t\t\t\t</not>\n")
+                        .append("\t\t\t</disj>\n");
+            } else {
+                xml.append("\t\t\t<imp>\n")
+                        .append("\t\t\t\t<var>").append(constraint.left.id).append("</var>\n")
+                        .append("\t\t\t\t<var>").append(constraint.right.id).append("</var>\n")
+                        .append("\t\t\t</imp>\n");
+            }
+            xml.append("\t\t</rule>\n");
+        }
+        xml.append("\t</constraints>\n");
+        xml.append("</featureModel>\n");
+
+        return xml.toString();
+    }
+
+    /**
+     * Generates the feature model in the JSON format of Glencoe.
+     */
+    public String toGlencoe() {
+        Model model = generate();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"id\": \"").append(model.name).append("\",\n  \"name\": \"").append(model.name).append("\",\n");
+        json.append("  \"features\": {\n");
+        for (int i = 0; i < model.features.size(); i++) {
+            Node feature = model.features.get(i);
+            String type = feature.kind == Kind.ALTERNATIVE ? "XOR" : feature.kind == Kind.OR ? "OR" : "FEATURE";
+            json.append("    \"").append(feature.id).append("\": {\"name\": \"").append(feature.id)
+                    .append("\", \"optional\": ").append(feature.parent != null && !feature.mandatory)
+                    .append(", \"type\": \"").append(type).append("\"}")
+                    .append(i < model.features.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("  },\n");
+
+        json.append("  \"tree\": ");
+        appendGlencoe(json, model.features.get(0));
+        json.append(",\n");
+
+        json.append("  \"constraints\": {\n");
+        for (int i = 0; i < model.constraints.size(); i++) {
+            Constraint constraint = model.constraints.get(i);
+            json.append("    \"c").append(i + 1).append("\": {\"type\": \"")
+                    .append(constraint.excludes ? "ExcludesTerm" : "ImpliesTerm").append("\", \"operands\": [")
+                    .append("{\"type\": \"FeatureTerm\", \"operands\": [\"").append(constraint.left.id).append("\"]}, ")
+                    .append("{\"type\": \"FeatureTerm\", \"operands\": [\"").append(constraint.right.id).append("\"]}]}")
+                    .append(i < model.constraints.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("  }\n}\n");
+
+        return json.toString();
+    }
+
+    /**
+     * Generates the feature model in the FM4Conf format.
+     */
+    public String toFM4Conf() {
+        Model model = generate();
+
+        List<String> features = new ArrayList<>();
+        List<String> relationships = new ArrayList<>();
+        for (Node feature : model.features) {
+            features.add(feature.id);
+            if (feature.children.isEmpty()) {
+                continue;
+            }
+            switch (feature.kind) {
+                case ALTERNATIVE, OR -> relationships.add((feature.kind == Kind.ALTERNATIVE ? "alternative(" : "or(")
+                        + feature.id + ", " + String.join(", ", feature.children.stream().map(child -> child.id).toList()) + ")");
+                default -> {
+                    for (Node child : feature.children) {
+                        relationships.add(child.mandatory
+                                ? "mandatory(" + feature.id + ", " + child.id + ")"
+                                : "optional(" + child.id + ", " + feature.id + ")");
+                    }
+                }
+            }
+        }
+        List<String> constraints = model.constraints.stream()
+                .map(c -> (c.excludes ? "excludes(" : "requires(") + c.left.id + ", " + c.right.id + ")")
+                .toList();
+
+        return "FM4Conf-v1.0\n"
+                + "MODEL:\n" + model.name + "\n"
+                + "FEATURES:\n" + String.join(",\n", features) + "\n"
+                + "RELATIONSHIPS:\n" + String.join(",\n", relationships) + "\n"
+                + "CONSTRAINTS:\n" + String.join(",\n", constraints) + "\n";
+    }
+
+    /**
+     * Generates the feature model in the given format.
+     * @throws IllegalArgumentException if the format isn't supported by the generator, i.e., XMI
+     */
+    public String to(@NonNull FMFormat format) {
+        return switch (format) {
+            case SXFM -> toSXFM();
+            case FEATUREIDE -> toFeatureIDE();
+            case GLENCOE -> toGlencoe();
+            case DESCRIPTIVE -> toFM4Conf();
+            default -> throw new IllegalArgumentException("The generator doesn't support the format " + format + ".");
+        };
+    }
+
+    /**
+     * Generates the feature model and writes it to the given file in the SXFM format.
+     */
+    public Path writeSXFM(@NonNull Path file) throws IOException {
+        return write(file, FMFormat.SXFM);
+    }
+
+    /**
+     * Generates the feature model and writes it to the given file in the given format.
+     */
+    public Path write(@NonNull Path file, @NonNull FMFormat format) throws IOException {
+        return Files.writeString(file, to(format), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates the feature model and parses it, since the parsers are the way to build a {@link FeatureModel}.
+     */
+    public FeatureModel toFeatureModel() throws IOException, FeatureModelParserException {
+        Path dir = Files.createTempDirectory("kbstatistics-generator");
+        Path file = dir.resolve("synthetic_" + numFeatures + "_" + seed + "." + FeatureModelFormats.extensionOf(FMFormat.SXFM));
+        try {
+            writeSXFM(file);
+            return FMParserFactory.getInstance().getParser(FMFormat.SXFM).parse(file.toFile());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private Model generate() {
+        checkArgument(numFeatures > 0, "The number of features must be positive.");
+        checkArgument(maxChildren > 0, "The maximum number of children must be positive.");
+        checkArgument(maxDepth > 0, "The maximum depth must be positive.");
+        checkArgument(groupRatio >= 0 && groupRatio <= 1, "The group ratio must be in [0, 1].");
+        checkArgument(orRatio >= 0 && orRatio <= 1, "The OR ratio must be in [0, 1].");
+        checkArgument(mandatoryRatio >= 0 && mandatoryRatio <= 1, "The mandatory ratio must be in [0, 1].");
+        checkArgument(ctcRatio >= 0 && ctcRatio < 1, "The CTC ratio must be in [0, 1).");
+
+        Random random = new Random(seed);
+        Model model = new Model("Synthetic_" + numFeatures + "_" + seed);
+        model.features.add(new Node("F0", null));
+
+        // breadth-first, each feature in the list becomes a parent once, or again after a full round
+        for (int parent = 0; model.features.size() < numFeatures; parent = (parent + 1) % model.features.size()) {
+            Node node = model.features.get(parent);
+            if (node.depth >= maxDepth) {
+                continue;
+            }
+
+            int remaining = numFeatures - model.features.size();
+            int numChildren = Math.min(remaining, 1 + random.nextInt(maxChildren));
+            if (node.kind == null) {
+                node.kind = numChildren >= 2 && random.nextDouble() < groupRatio
+                        ? (random.nextDouble() < orRatio ? Kind.OR : Kind.ALTERNATIVE)
+                        : Kind.AND;
+            }
+
+            for (int i = 0; i < numChildren; i++) {
+                Node child = new Node("F" + model.features.size(), node);
+                child.mandatory = node.kind == Kind.AND && random.nextDouble() < mandatoryRatio;
+                node.children.add(child);
+                model.features.add(child);
+            }
+        }
+
+        int numRelationships = 0;
+        for (Node feature : model.features) {
+            if (feature.kind == Kind.AND) {
+                numRelationships += feature.children.size();
+            } else if (feature.kind != null) {
+                numRelationships++;
+            }
+        }
+
+        int numCTCs = (int) Math.round(ctcRatio * numRelationships / (1 - ctcRatio));
+        int size = model.features.size();
+        for (int i = 0; i < numCTCs && size > 2; i++) {
+            int left = 1 + random.nextInt(size - 1);
+            int right = 1 + random.nextInt(size - 1);
+            if (left == right) {
+                right = right == size - 1 ? 1 : right + 1;
+            }
+            model.constraints.add(new Constraint(model.features.get(left), model.features.get(right), random.nextBoolean()));
+        }
+        return model;
+    }
+
+    private static void appendSXFM(StringBuilder sxfm, Node node, int depth) {
+        String indent = "\t".repeat(depth);
+        switch (node.kind == null ? Kind.AND : node.kind) {
+            case AND -> {
+                for (Node child : node.children) {
+                    sxfm.append(indent).append(child.mandatory ? ":m " : ":o ")
+                            .append(child.id).append("(").append(child.id).append(")\n");
+                    appendSXFM(sxfm, child, depth + 1);
+                }
+            }
+            case ALTERNATIVE, OR -> {
+                sxfm.append(indent).append(":g (").append(node.id).append("_g")
+                        .append(node.kind == Kind.ALTERNATIVE ? ") [1,1]\n" : ") [1,*]\n");
+                for (Node child : node.children) {
+                    sxfm.append(indent).append("\t: ").append(child.id).append("(").append(child.id).append(")\n");
+                    appendSXFM(sxfm, child, depth + 2);
+                }
+            }
+        }
+    }
+
+    private static void appendFeatureIDE(StringBuilder xml, Node node, boolean mandatory, int depth) {
+        String indent = "\t".repeat(depth);
+        String attributes = (mandatory ? " mandatory=\"true\"" : "") + " name=\"" + node.id + "\"";
+        if (node.children.isEmpty()) {
+            xml.append(indent).append("<feature").append(attributes).append("/>\n");
+            return;
+        }
+        String tag = switch (node.kind) {
+            case ALTERNATIVE -> "alt";
+            case OR -> "or";
+            default -> "and";
+        };
+        xml.append(indent).append('<').append(tag).append(attributes).append(">\n");
+        for (Node child : node.children) {
+            appendFeatureIDE(xml, child, child.mandatory, depth + 1);
+        }
+        xml.append(indent).append("</").append(tag).append(">\n");
+    }
+
+    private static void appendGlencoe(StringBuilder json, Node node) {
+        json.append("{\"id\": \"").append(node.id).append('"');
+        if (!node.children.isEmpty()) {
+            json.append(", \"children\": [");
+            for (int i = 0; i < node.children.size(); i++) {
+                if (i > 0) {
+                    json.append(", ");
+                }
+                appendGlencoe(json, node.children.get(i));
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    /**
+     * The kind of the children of a feature.
+     */
+    private enum Kind { AND, ALTERNATIVE, OR }
+
+    private static class Model {
+        private final String name;
+        /**
+         * The features in breadth-first order, the root first.
+         */
+        private final List<Node> features = new ArrayList<>();
+        private final List<Constraint> constraints = new ArrayList<>();
+
+        Model(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Node {
+        private final String id;
+        private final Node parent;
+        private final int depth;
+        private final List<Node> children = new ArrayList<>();
+        /**
+         * null while the feature has no children.
+         */
+        private Kind kind;
+        /**
+         * Whether the relationship to the parent is MANDATORY, only for children of AND features.
+         */
+        private boolean mandatory;
+
+        Node(String id, Node parent) {
+            this.id = id;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+    }
+
+    private record Constraint(Node left, Node right, boolean excludes) {
+    }
+}
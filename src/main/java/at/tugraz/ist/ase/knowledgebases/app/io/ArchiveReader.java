@@ -0,0 +1,209 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the feature models of .zip, .tar.gz and .tgz archives without unpacking them to disk.
+ * The archive is streamed once, and each entry with a feature model extension, or with another or no extension
+ * and the content of a feature model (see {@link FeatureModelFormats#sniff(byte[])}), is read into memory
+ * and handed to the visitor before the next entry is read.
+ */
+@UtilityClass
+public class ArchiveReader {
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(FeatureModelSource source) throws IOException, FeatureModelParserException;
+    }
+
+    private static final int TAR_BLOCK = 512;
+
+    public static boolean isArchive(@NonNull Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Visits the feature models of the given archive in the order of its entries.
+     */
+    public static void read(@NonNull Path archive, @NonNull EntryVisitor visitor) throws IOException, FeatureModelParserException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archive))) {
+            if (archive.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                readZip(archive, in, visitor);
+            } else {
+                readTar(archive, new GZIPInputStream(in), visitor);
+            }
+        }
+    }
+
+    private static void readZip(Path archive, InputStream in, EntryVisitor visitor) throws IOException, FeatureModelParserException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                visitEntry(archive, entry.getName(), zip, visitor);
+            }
+        }
+    }
+
+    /**
+     * Reads a POSIX (ustar) or GNU tar stream: 512-byte headers, each followed by the entry's content
+     * padded to whole blocks. The long paths of GNU (type L) and PAX (type x) headers are supported,
+     * other extended headers, e.g., PAX global headers, are skipped.
+     */
+    private static void readTar(Path archive, InputStream in, EntryVisitor visitor) throws IOException, FeatureModelParserException {
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+        Map<String, String> pax = Map.of();
+        while (true) {
+            if (ByteStreams.read(in, header, 0, TAR_BLOCK) < TAR_BLOCK || isZeroBlock(header)) {
+                return;
+            }
+
+            String name = string(header, 0, 100);
+            long size = octal(header, 124, 12);
+            char type = (char) header[156];
+            // the magic of POSIX headers is "ustar\0", GNU headers ("ustar  ") use the prefix field otherwise
+            String prefix = "ustar".equals(string(header, 257, 6)) ? string(header, 345, 155) : "";
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            if (!pax.isEmpty()) {
+                name = pax.getOrDefault("path", name);
+                size = pax.containsKey("size") ? paxSize(pax.get("size")) : size;
+                pax = Map.of();
+            }
+
+            InputStream content = ByteStreams.limit(in, size);
+            if (type == 'L') {
+                longName = new String(ByteStreams.toByteArray(content), StandardCharsets.UTF_8).replace("\0", "");
+            } else if (type == 'x') {
+                pax = paxRecords(ByteStreams.toByteArray(content));
+            } else if (type == '0' || type == '\0') {
+                visitEntry(archive, name, content, visitor);
+            }
+
+            // the rest of the content and the padding of its last block
+            ByteStreams.exhaust(content);
+            long padding = (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+            ByteStreams.skipFully(in, padding);
+        }
+    }
+
+    /**
+     * Parses the records "length key=value\n" of a PAX extended header, where length is the number of bytes
+     * of the whole record.
+     */
+    private static Map<String, String> paxRecords(byte[] data) throws IOException {
+        Map<String, String> records = new HashMap<>();
+        int offset = 0;
+        while (offset < data.length && data[offset] != 0) {
+            int space = offset;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, offset, space - offset, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new EOFException("Invalid PAX header: record length " + new String(data, offset, space - offset, StandardCharsets.US_ASCII));
+            }
+            if (length <= space - offset || offset + length > data.length || data[offset + length - 1] != '\n') {
+                throw new EOFException("Invalid PAX header: record of " + length + " bytes");
+            }
+            String record = new String(data, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                records.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            offset += length;
+        }
+        return records;
+    }
+
+    private static long paxSize(String value) throws IOException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new EOFException("Invalid PAX header: size " + value);
+        }
+    }
+
+    private static void visitEntry(Path archive, String entryName, InputStream content, EntryVisitor visitor)
+            throws IOException, FeatureModelParserException {
+        Path entryPath = Paths.get(entryName);
+        if (entryPath.getFileName() == null) {
+            return;
+        }
+        byte[] bytes;
+        if (FeatureModelWalker.isFeatureModel(entryPath)) {
+            bytes = ByteStreams.toByteArray(content);
+        } else {
+            // only the start of an entry without a feature model extension is read, unless it is a feature model
+            byte[] head = content.readNBytes(FeatureModelFormats.SNIFF_LENGTH);
+            if (FeatureModelFormats.sniff(head) == FMFormat.NONE) {
+                return;
+            }
+            bytes = Bytes.concat(head, ByteStreams.toByteArray(content));
+        }
+        visitor.visit(FeatureModelSource.of(archive + "!/" + entryName, entryPath.getFileName().toString(), bytes));
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long octal(byte[] header, int offset, int length) throws IOException {
+        String value = string(header, offset, length).trim();
+        try {
+            return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+        } catch (NumberFormatException e) {
+            throw new EOFException("Invalid tar header: size " + value);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A journal of the records written to the output file, which allows resuming an interrupted run.
+ * <p>
+ * After a record is written and flushed, a line "counter TAB output offset TAB ok|failed TAB input" is appended
+ * to the journal, where the offset is the size of the output file after the record.
+ * Since records are written in the order of the counter, the journal always covers a prefix
+ * of the inputs. A last line without a line break, cut off by a crash, is ignored and removed on resume. The lines of older journals
+ * without the status are read as succeeded records.
+ */
+public class CheckpointJournal implements Closeable {
+
+    private static final String OK = "ok";
+    private static final String FAILED = "failed";
+
+    private final Map<Integer, String> completed = new HashMap<>();
+    private final BufferedWriter writer;
+
+    /**
+     * The number of completed records which are failures.
+     */
+    @Getter
+    private int numFailed = 0;
+
+    /**
+     * The size of the output file after the last completed record.
+     */
+    @Getter
+    private long offset = 0;
+
+    /**
+     * Returns the journal of the given output file.
+     */
+    public static Path journalOf(@NonNull Path outFile) {
+        return outFile.resolveSibling(outFile.getFileName() + ".journal");
+    }
+
+    /**
+     * Opens the journal.
+     * @param resume if true, the completed records are read from an existing journal and new ones are appended,
+     *               otherwise the journal is truncated
+     */
+    public CheckpointJournal(@NonNull Path journal, boolean resume) throws IOException {
+        if (resume && Files.exists(journal)) {
+            // a last line without a line break was cut off while it was written, it is dropped
+            byte[] bytes = Files.readAllBytes(journal);
+            int length = 0;
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    length = i + 1;
+                    break;
+                }
+            }
+            read(new String(bytes, 0, length, StandardCharsets.UTF_8).lines().toList());
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } else {
+            writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void read(List<String> lines) {
+        for (String line : lines) {
+            String[] parts = line.split("\t", 3);
+            if (parts.length < 3) {
+                continue; // truncated line
+            }
+            String[] statusAndInput = parts[2].split("\t", 2);
+            boolean withStatus = statusAndInput.length == 2
+                    && (statusAndInput[0].equals(OK) || statusAndInput[0].equals(FAILED));
+            try {
+                int counter = Integer.parseInt(parts[0]);
+                long recordOffset = Long.parseLong(parts[1]);
+
+                completed.put(counter, withStatus ? statusAndInput[1] : parts[2]);
+                if (withStatus && statusAndInput[0].equals(FAILED)) {
+                    numFailed++;
+                }
+                offset = Math.max(offset, recordOffset);
+            } catch (NumberFormatException ignored) {
+                // truncated line
+            }
+        }
+    }
+
+    /**
+     * Returns whether the record with the given counter was already written.
+     * @throws IllegalStateException if the input of the counter differs from the journal's one, i.e., the inputs
+     *                               changed since the checkpoint, so the written records don't belong to them
+     */
+    public boolean isCompleted(int counter, @NonNull String input) {
+        String journaled = completed.get(counter);
+        if (journaled == null) {
+            return false;
+        }
+        checkState(journaled.equals(input), "The input %s changed since the checkpoint: %s -> %s. "
+                + "Start a new run without -resume.", counter, journaled, input);
+        return true;
+    }
+
+    public int getNumCompleted() {
+        return completed.size();
+    }
+
+    /**
+     * Records that the record with the given counter was written and flushed.
+     * @param failed whether the record is a failure
+     * @param outputOffset the size of the output file after the record
+     */
+    public void record(int counter, @NonNull String input, boolean failed, long outputOffset) throws IOException {
+        writer.write(counter + "\t" + outputOffset + "\t" + (failed ? FAILED : OK) + "\t" + input + "\n");
+        writer.flush();
+
+        completed.put(counter, input);
+        if (failed) {
+            numFailed++;
+        }
+        offset = outputOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records written by {@link CsvStatisticsWriter}, keyed by the columns of the header line.
+ * The values are kept as they were written, empty fields become null.
+ */
+@UtilityClass
+public class CsvStatisticsReader {
+
+    /**
+     * Returns the records of the given file, without the header line.
+     */
+    public static List<Map<String, Object>> read(@NonNull Path file) throws IOException {
+        List<List<String>> rows = parse(Files.readString(file, StandardCharsets.UTF_8));
+        List<Map<String, Object>> records = new ArrayList<>();
+        if (rows.isEmpty()) {
+            return records;
+        }
+
+        List<String> header = rows.get(0);
+        for (int i = 1; i < rows.size(); i++) {
+            List<String> row = rows.get(i);
+            if (row.size() != header.size()) {
+                throw new IOException(file + ": record " + i + " has " + row.size() + " fields, the header " + header.size());
+            }
+            Map<String, Object> record = new LinkedHashMap<>();
+            for (int column = 0; column < header.size(); column++) {
+                String value = row.get(column);
+                record.put(header.get(column), value.isEmpty() ? null : value);
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Splits CSV (RFC 4180) into rows of fields. Quoted fields may contain commas, quotes and line breaks.
+     */
+    static List<List<String>> parse(String csv) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                row.add(field.toString());
+                field.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        if (field.length() > 0 || !row.isEmpty()) {
+            row.add(field.toString());
+            rows.add(row);
+        }
+        return rows;
+    }
+}
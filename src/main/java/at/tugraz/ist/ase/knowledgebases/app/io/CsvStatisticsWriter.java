@@ -0,0 +1,80 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes statistics records as CSV (RFC 4180) with the columns of {@link StatisticsColumn}.
+ * Missing values are written as empty fields.
+ */
+public class CsvStatisticsWriter implements StatisticsWriter {
+
+    private final Writer out;
+    private final Set<StatisticsColumn.Group> groups;
+    private boolean headerWritten;
+
+    /**
+     * @param append if true, the header isn't written since the output already has it
+     */
+    public CsvStatisticsWriter(@NonNull Writer out, @NonNull Set<StatisticsColumn.Group> groups, boolean append) {
+        this.out = out;
+        this.groups = groups;
+        this.headerWritten = append;
+    }
+
+    /**
+     * Returns the header line of the CSV format, without line break.
+     */
+    public static String header() {
+        return Arrays.stream(StatisticsColumn.values())
+                .map(StatisticsColumn::getKey)
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public void write(@NonNull StatisticsRecord record) throws IOException {
+        if (!headerWritten) {
+            out.write(header() + "\n");
+            headerWritten = true;
+        }
+
+        StringBuilder line = new StringBuilder();
+        for (StatisticsColumn column : StatisticsColumn.values()) {
+            if (column.ordinal() > 0) {
+                line.append(',');
+            }
+            Object value = groups.contains(column.getGroup()) ? column.valueOf(record) : null;
+            if (value != null) {
+                line.append(escape(value.toString()));
+            }
+        }
+        out.write(line.append('\n').toString());
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    public static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
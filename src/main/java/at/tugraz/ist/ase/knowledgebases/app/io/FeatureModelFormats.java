@@ -0,0 +1,96 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes the format of a feature model from its content instead of its file extension.
+ */
+@UtilityClass
+public class FeatureModelFormats {
+
+    /**
+     * The number of bytes at the start of the content which are inspected.
+     */
+    static final int SNIFF_LENGTH = 8192;
+
+    /**
+     * The name of the root element of an XML document, after the declaration, comments and the doctype.
+     */
+    private static final Pattern XML_ROOT = Pattern.compile(
+            "\\A(?:\\s|<\\?.*?\\?>|<!--.*?-->|<!DOCTYPE[^>]*>)*<([A-Za-z_][\\w.:-]*)", Pattern.DOTALL);
+
+    /**
+     * The object of the features of a Glencoe model, unlike the number of features of a JSON Lines record of statistics.
+     */
+    private static final Pattern GLENCOE_FEATURES = Pattern.compile("\"features\"\\s*:\\s*\\{");
+
+    /**
+     * Returns the format of the given content, NONE if it isn't recognized.
+     */
+    public static FMFormat sniff(@NonNull byte[] content) {
+        String head = new String(content, 0, Math.min(content.length, SNIFF_LENGTH), StandardCharsets.UTF_8);
+        if (head.startsWith("\uFEFF")) {
+            head = head.substring(1);
+        }
+        String trimmed = head.stripLeading();
+
+        if (trimmed.startsWith("FM4Conf")) {
+            return FMFormat.DESCRIPTIVE;
+        }
+        if (trimmed.startsWith("{")) {
+            return GLENCOE_FEATURES.matcher(trimmed).find() ? FMFormat.GLENCOE : FMFormat.NONE;
+        }
+
+        Matcher root = XML_ROOT.matcher(head);
+        if (root.lookingAt()) {
+            return switch (root.group(1)) {
+                case "feature_model" -> FMFormat.SXFM;
+                case "featureModel", "extendedFeatureModel" -> FMFormat.FEATUREIDE;
+                case "xmi:XMI" -> FMFormat.XMI;
+                default -> FMFormat.NONE;
+            };
+        }
+        return FMFormat.NONE;
+    }
+
+    /**
+     * Returns the format of the given file from the start of its content, NONE if it isn't recognized.
+     */
+    public static FMFormat sniff(@NonNull Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return sniff(in.readNBytes(SNIFF_LENGTH));
+        }
+    }
+
+    /**
+     * Returns the file extension of the given format, which {@link FMFormat#getFMFormat(String)} maps back to it.
+     */
+    public static String extensionOf(@NonNull FMFormat format) {
+        return switch (format) {
+            case SXFM -> "sxfm";
+            case FEATUREIDE -> "xml";
+            case GLENCOE -> "json";
+            case DESCRIPTIVE -> "fm4conf";
+            case XMI -> "xmi";
+            default -> throw new IllegalArgumentException("The format " + format + " has no extension.");
+        };
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A feature model to process, either a file or an entry of an archive.
+ */
+@Getter
+public class FeatureModelSource {
+    /**
+     * The path of the file, or the path of the archive and the entry, e.g. "corpus.zip!/models/a.sxfm".
+     */
+    private final String path;
+    /**
+     * The file name, without directories.
+     */
+    private final String name;
+    /**
+     * The file on disk, null for an entry of an archive.
+     */
+    private final File file;
+    private final ByteSource content;
+    /**
+     * The error of listing the file or directory, null if it could be listed.
+     */
+    private final IOException readError;
+
+    private FeatureModelSource(String path, String name, File file, ByteSource content, IOException readError) {
+        this.path = path;
+        this.name = name;
+        this.file = file;
+        this.content = content;
+        this.readError = readError;
+    }
+
+    public static FeatureModelSource of(@NonNull File file) {
+        return new FeatureModelSource(file.getPath(), file.getName(), file, Files.asByteSource(file), null);
+    }
+
+    /**
+     * Creates the source of a file or directory which couldn't be read while walking a directory,
+     * whose {@link #read()} throws the given error, so that it becomes a failure of its own.
+     */
+    public static FeatureModelSource unreadable(@NonNull Path path, @NonNull IOException error) {
+        return new FeatureModelSource(path.toString(), String.valueOf(path.getFileName()), path.toFile(), new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                throw error;
+            }
+        }, error);
+    }
+
+    /**
+     * Creates the source of an entry of an archive, whose content has been read already.
+     */
+    public static FeatureModelSource of(@NonNull String path, @NonNull String name, @NonNull byte[] content) {
+        return new FeatureModelSource(path, name, null, ByteSource.wrap(content), null);
+    }
+
+    /**
+     * Returns the size of the content in bytes, 0 if it is unknown.
+     */
+    public long size() {
+        try {
+            return content.sizeIfKnown().or(0L);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the whole content.
+     */
+    public byte[] read() throws IOException {
+        return content.read();
+    }
+}
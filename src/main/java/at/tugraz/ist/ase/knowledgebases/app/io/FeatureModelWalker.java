@@ -0,0 +1,126 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import com.google.common.io.MoreFiles;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Walks a directory recursively and hands each feature model file to a visitor
+ * as soon as it is discovered, without materializing the directory listing.
+ * <p>
+ * Files are recognized as feature models by their extension (see {@link FMFormat#getFMFormat(String)}),
+ * files with another or no extension by their content (see {@link FeatureModelFormats#sniff(Path)}),
+ * the feature models of archives are handed to the visitor as well (see {@link ArchiveReader}).
+ * Unreadable files and directories are handed to the visitor as well, as sources whose content can't be read
+ * (see {@link FeatureModelSource#unreadable}), so that they fail like any other feature model.
+ */
+public class FeatureModelWalker {
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(FeatureModelSource source) throws IOException, FeatureModelParserException;
+    }
+
+    private final int maxDepth;
+
+    public FeatureModelWalker(int maxDepth) {
+        checkArgument(maxDepth > 0, "The maximum depth must be positive.");
+
+        this.maxDepth = maxDepth;
+    }
+
+    public static boolean isFeatureModel(@NonNull Path file) {
+        String extension = MoreFiles.getFileExtension(file);
+        return !extension.isEmpty() && FMFormat.getFMFormat(extension) != FMFormat.NONE;
+    }
+
+    /**
+     * Whether the content of the given file, which has no feature model extension, is a feature model.
+     * A file which can't be read is skipped, as any other file which isn't a feature model.
+     */
+    private static boolean isSniffedFeatureModel(Path file) {
+        try {
+            return FeatureModelFormats.sniff(file) != FMFormat.NONE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void walk(@NonNull Path dir, @NonNull Visitor visitor) throws IOException, FeatureModelParserException {
+        if (!Files.isDirectory(dir)) {
+            throw new IOException(dir + " is not a directory");
+        }
+
+        try {
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && (isFeatureModel(file) || ArchiveReader.isArchive(file) || isSniffedFeatureModel(file))) {
+                        try {
+                            visit(file, visitor);
+                        } catch (FeatureModelParserException e) {
+                            throw new VisitorException(e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    System.out.println("Failed to read " + file + " - " + exc.getMessage());
+                    try {
+                        visitor.visit(FeatureModelSource.unreadable(file, exc));
+                    } catch (FeatureModelParserException e) {
+                        throw new VisitorException(e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (VisitorException e) {
+            throw e.cause;
+        }
+    }
+
+    /**
+     * Hands the given feature model file, or the feature models of the given archive, to the visitor.
+     */
+    public static void visit(@NonNull Path file, @NonNull Visitor visitor) throws IOException, FeatureModelParserException {
+        if (ArchiveReader.isArchive(file)) {
+            ArchiveReader.read(file, visitor::visit);
+        } else {
+            visitor.visit(FeatureModelSource.of(file.toFile()));
+        }
+    }
+
+    /**
+     * Tunnels the parser exceptions of the visitor through {@link Files#walkFileTree}.
+     */
+    private static class VisitorException extends IOException {
+        private final FeatureModelParserException cause;
+
+        VisitorException(FeatureModelParserException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import lombok.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records written by {@link JsonLinesStatisticsWriter}, e.g., the output of a run with an earlier version.
+ * Each line is a flat JSON object, whose values are Strings, Longs, Doubles, Booleans or null.
+ * Columns unknown to this version are kept, missing columns are absent.
+ */
+public class JsonLinesStatisticsReader {
+
+    private final String line;
+    private int pos;
+
+    private JsonLinesStatisticsReader(String line) {
+        this.line = line;
+    }
+
+    /**
+     * Reads all records of the given file, skipping empty lines.
+     */
+    public static List<Map<String, Object>> read(@NonNull Path file) throws IOException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    records.add(parse(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Parses one line, a flat JSON object.
+     */
+    public static Map<String, Object> parse(@NonNull String line) {
+        JsonLinesStatisticsReader reader = new JsonLinesStatisticsReader(line);
+        Map<String, Object> record = reader.object();
+        reader.skipWhitespace();
+        if (reader.pos < line.length()) {
+            throw reader.error("unexpected content after the object");
+        }
+        return record;
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return record;
+        }
+        do {
+            skipWhitespace();
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            record.put(key, value());
+            skipWhitespace();
+        } while (consume(','));
+        expect('}');
+        return record;
+    }
+
+    private Object value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        } else if (line.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        } else if (line.startsWith("true", pos)) {
+            pos += 4;
+            return true;
+        } else if (line.startsWith("false", pos)) {
+            pos += 5;
+            return false;
+        } else if (c == '-' || Character.isDigit(c)) {
+            return number();
+        }
+        throw error("unsupported value");
+    }
+
+    private Number number() {
+        int start = pos;
+        while (pos < line.length() && "+-0123456789.eE".indexOf(line.charAt(pos)) >= 0) {
+            pos++;
+        }
+        String text = line.substring(start, pos);
+        try {
+            if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                return Long.parseLong(text);
+            }
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("invalid number " + text);
+        }
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (pos >= line.length()) {
+                throw error("unterminated string");
+            }
+            char c = line.charAt(pos++);
+            if (c == '"') {
+                return value.toString();
+            } else if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (pos >= line.length()) {
+                throw error("unterminated string");
+            }
+            char escaped = line.charAt(pos++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (pos + 4 > line.length()) {
+                        throw error("invalid escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                    pos += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+    }
+
+    private char peek() {
+        if (pos >= line.length()) {
+            throw error("unexpected end of line");
+        }
+        return line.charAt(pos);
+    }
+
+    private boolean consume(char c) {
+        if (pos < line.length() && line.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at column " + (pos + 1));
+    }
+}
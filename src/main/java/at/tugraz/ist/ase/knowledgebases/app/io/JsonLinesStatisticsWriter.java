@@ -0,0 +1,82 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Writes statistics records as JSON Lines, one object per record
+ * with the columns of {@link StatisticsColumn} as keys. Missing values are written as null.
+ */
+public class JsonLinesStatisticsWriter implements StatisticsWriter {
+
+    private final Writer out;
+    private final Set<StatisticsColumn.Group> groups;
+
+    public JsonLinesStatisticsWriter(@NonNull Writer out, @NonNull Set<StatisticsColumn.Group> groups) {
+        this.out = out;
+        this.groups = groups;
+    }
+
+    @Override
+    public void write(@NonNull StatisticsRecord record) throws IOException {
+        StringBuilder line = new StringBuilder("{");
+        for (StatisticsColumn column : StatisticsColumn.values()) {
+            if (column.ordinal() > 0) {
+                line.append(',');
+            }
+            Object value = groups.contains(column.getGroup()) ? column.valueOf(record) : null;
+            line.append(quote(column.getKey())).append(':').append(toJson(value));
+        }
+        out.write(line.append("}\n").toString());
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    public static String toJson(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof Double d) {
+            return d.isNaN() || d.isInfinite() ? "null" : d.toString();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return quote(value.toString());
+    }
+
+    public static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import lombok.NonNull;
+
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The supported output formats.
+ */
+public enum OutputFormat {
+    /**
+     * A "key: value" block per knowledge base.
+     */
+    TEXT,
+    /**
+     * A header line and one line per knowledge base with the columns of {@link StatisticsColumn}.
+     */
+    CSV,
+    /**
+     * One JSON object per line and knowledge base with the columns of {@link StatisticsColumn} as keys.
+     */
+    JSONL;
+
+    /**
+     * Creates a writer of this format.
+     * @param groups the optional column groups to write, the other optional groups are written as empty values
+     * @param append whether the records are appended to an output which already has records
+     */
+    public StatisticsWriter createWriter(@NonNull Writer out, @NonNull Set<StatisticsColumn.Group> groups, boolean append) {
+        Set<StatisticsColumn.Group> enabled = enabledGroups(groups);
+
+        return switch (this) {
+            case TEXT -> new TextStatisticsWriter(out, enabled);
+            case CSV -> new CsvStatisticsWriter(out, enabled, append);
+            case JSONL -> new JsonLinesStatisticsWriter(out, enabled);
+        };
+    }
+
+    /**
+     * Returns the column groups which are written: the given optional groups and the groups which are always written.
+     */
+    public static Set<StatisticsColumn.Group> enabledGroups(@NonNull Set<StatisticsColumn.Group> groups) {
+        EnumSet<StatisticsColumn.Group> enabled = EnumSet.of(StatisticsColumn.Group.GENERAL, StatisticsColumn.Group.FM,
+                StatisticsColumn.Group.SOLUTION_SPACE, StatisticsColumn.Group.CHOCO_PROFILE);
+        enabled.addAll(groups);
+        return enabled;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.FMStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.Phase;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTiming;
+import at.tugraz.ist.ase.knowledgebases.app.core.ProcessingError;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolutionSpaceStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolverMeasures;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The fixed schema of the CSV and JSON Lines formats.
+ * Every record has all columns in this order. A column's value is null
+ * if the record doesn't have it, e.g., the FM columns of the PC knowledge base,
+ * or if its group isn't written.
+ */
+public enum StatisticsColumn {
+    COUNTER("counter", Group.GENERAL, StatisticsRecord::getCounter),
+    NAME("name", Group.GENERAL, StatisticsRecord::getName),
+    SOURCE("source", Group.GENERAL, StatisticsRecord::getSource),
+    VARIABLES("variables", Group.GENERAL, StatisticsRecord::getNumVariables),
+    CONSTRAINTS("constraints", Group.GENERAL, StatisticsRecord::getNumConstraints),
+    CHOCO_VARIABLES("choco_variables", Group.GENERAL, StatisticsRecord::getNumChocoVars),
+    CHOCO_CONSTRAINTS("choco_constraints", Group.GENERAL, StatisticsRecord::getNumChocoConstraints),
+    CONSISTENCY("consistency", Group.GENERAL, r -> r.getConsistency() == null ? null : r.getConsistency().name().toLowerCase()),
+
+    NODES("nodes", Group.SOLVER, solver(SolverMeasures::getNodes)),
+    BACKTRACKS("backtracks", Group.SOLVER, solver(SolverMeasures::getBacktracks)),
+    FAILS("fails", Group.SOLVER, solver(SolverMeasures::getFails)),
+    SOLVE_TIME_S("solve_time_s", Group.SOLVER, r -> r.getSolverMeasures() == null ? null : r.getSolverMeasures().getSolveTimeSeconds()),
+
+    CTC_RATIO("ctc_ratio", Group.FM, fm(FMStatistics::getCtcRatio)),
+    FEATURES("features", Group.FM, fm(FMStatistics::getNumFeatures)),
+    RELATIONSHIPS("relationships", Group.FM, fm(FMStatistics::getNumRelationships)),
+    CTCS("cross_tree_constraints", Group.FM, fm(FMStatistics::getNumConstraints)),
+    MANDATORY("mandatory", Group.FM, fm(FMStatistics::getNumMandatory)),
+    OPTIONAL("optional", Group.FM, fm(FMStatistics::getNumOptional)),
+    ALTERNATIVE("alternative", Group.FM, fm(FMStatistics::getNumAlternative)),
+    OR("or", Group.FM, fm(FMStatistics::getNumOr)),
+    REQUIRES("requires", Group.FM, fm(FMStatistics::getNumRequires)),
+    EXCLUDES("excludes", Group.FM, fm(FMStatistics::getNumExcludes)),
+
+    TREE_DEPTH("tree_depth", Group.FM_METRICS, fm(FMStatistics::getTreeDepth)),
+    LEAVES("leaves", Group.FM_METRICS, fm(FMStatistics::getNumLeaves)),
+    MAX_BRANCHING_FACTOR("max_branching_factor", Group.FM_METRICS, fm(FMStatistics::getMaxBranchingFactor)),
+    AVG_BRANCHING_FACTOR("avg_branching_factor", Group.FM_METRICS, fm(FMStatistics::getAvgBranchingFactor)),
+    BRANCHING_FACTORS("branching_factors", Group.FM_METRICS, fm(FMStatistics::getBranchingFactorsAsString)),
+    CTC_FEATURES("ctc_features", Group.FM_METRICS, fm(FMStatistics::getNumCTCFeatures)),
+    CONSTRAINT_DENSITY("constraint_density", Group.FM_METRICS, fm(FMStatistics::getConstraintDensity)),
+    AVG_GROUP_SIZE("avg_group_size", Group.FM_METRICS, fm(FMStatistics::getAvgGroupSize)),
+    MAX_GROUP_SIZE("max_group_size", Group.FM_METRICS, fm(FMStatistics::getMaxGroupSize)),
+
+    CONFIGURATIONS("configurations", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumConfigurations)),
+    CONFIGURATIONS_EXACT("configurations_exact", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::isConfigurationsExact)),
+    ANALYZED_FEATURES("analyzed_features", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumAnalyzedFeatures)),
+    CORE_FEATURES("core_features", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumCoreFeatures)),
+    CORE_CHECKED("core_checked", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumCoreChecked)),
+    DEAD_FEATURES("dead_features", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumDeadFeatures)),
+    DEAD_CHECKED("dead_checked", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumDeadChecked)),
+    OPTIONAL_FEATURES("optional_features", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumOptionalFeatures)),
+    FALSE_OPTIONAL_FEATURES("false_optional_features", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumFalseOptionalFeatures)),
+    FALSE_OPTIONAL_CHECKED("false_optional_checked", Group.SOLUTION_SPACE, space(SolutionSpaceStatistics::getNumFalseOptionalChecked)),
+
+    CHOCO_PROFILE("choco_profile", Group.CHOCO_PROFILE, r -> r.getChocoProfile() == null ? null : r.getChocoProfile().toString()),
+
+    PARSE_WALL_MS("parse_wall_ms", Group.TIMINGS, millis(Phase.PARSE, PhaseTiming::getWallNanos)),
+    PARSE_CPU_MS("parse_cpu_ms", Group.TIMINGS, millis(Phase.PARSE, PhaseTiming::getCpuNanos)),
+    PARSE_ALLOCATED_BYTES("parse_allocated_bytes", Group.TIMINGS, bytes(Phase.PARSE)),
+    BUILD_WALL_MS("build_wall_ms", Group.TIMINGS, millis(Phase.BUILD, PhaseTiming::getWallNanos)),
+    BUILD_CPU_MS("build_cpu_ms", Group.TIMINGS, millis(Phase.BUILD, PhaseTiming::getCpuNanos)),
+    BUILD_ALLOCATED_BYTES("build_allocated_bytes", Group.TIMINGS, bytes(Phase.BUILD)),
+    SOLVE_WALL_MS("solve_wall_ms", Group.TIMINGS, millis(Phase.SOLVE, PhaseTiming::getWallNanos)),
+    SOLVE_CPU_MS("solve_cpu_ms", Group.TIMINGS, millis(Phase.SOLVE, PhaseTiming::getCpuNanos)),
+    SOLVE_ALLOCATED_BYTES("solve_allocated_bytes", Group.TIMINGS, bytes(Phase.SOLVE)),
+    ANALYZE_WALL_MS("analyze_wall_ms", Group.TIMINGS, millis(Phase.ANALYZE, PhaseTiming::getWallNanos)),
+    ANALYZE_CPU_MS("analyze_cpu_ms", Group.TIMINGS, millis(Phase.ANALYZE, PhaseTiming::getCpuNanos)),
+    ANALYZE_ALLOCATED_BYTES("analyze_allocated_bytes", Group.TIMINGS, bytes(Phase.ANALYZE)),
+
+    ERROR_PHASE("error_phase", Group.GENERAL, error(e -> e.getPhase() == null ? null : e.getPhase().name().toLowerCase())),
+    ERROR("error", Group.GENERAL, error(ProcessingError::getException)),
+    ERROR_MESSAGE("error_message", Group.GENERAL, error(ProcessingError::getMessage)),
+    ERROR_ELAPSED_MS("error_elapsed_ms", Group.GENERAL, error(e -> e.getElapsedNanos() / 1_000_000.0)),
+
+    INPUT("input", Group.GENERAL, StatisticsRecord::getInput);
+
+    /**
+     * Groups of columns, SOLVER, FM_METRICS and TIMINGS are only written if requested.
+     */
+    public enum Group {
+        GENERAL, SOLVER, FM, FM_METRICS, SOLUTION_SPACE, CHOCO_PROFILE, TIMINGS
+    }
+
+    @Getter
+    private final String key;
+    @Getter
+    private final Group group;
+    private final Function<StatisticsRecord, Object> extractor;
+
+    StatisticsColumn(String key, Group group, Function<StatisticsRecord, Object> extractor) {
+        this.key = key;
+        this.group = group;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Returns the value of this column of the given record, null if the record doesn't have it.
+     * Values are Strings, Numbers or null.
+     */
+    public Object valueOf(@NonNull StatisticsRecord record) {
+        return extractor.apply(record);
+    }
+
+    private static Function<StatisticsRecord, Object> fm(Function<FMStatistics, Object> extractor) {
+        return r -> r.getFmStatistics() == null ? null : extractor.apply(r.getFmStatistics());
+    }
+
+    private static Function<StatisticsRecord, Object> space(Function<SolutionSpaceStatistics, Object> extractor) {
+        return r -> r.getSolutionSpace() == null ? null : extractor.apply(r.getSolutionSpace());
+    }
+
+    private static Function<StatisticsRecord, Object> error(Function<ProcessingError, Object> extractor) {
+        return r -> r.getError() == null ? null : extractor.apply(r.getError());
+    }
+
+    private static Function<StatisticsRecord, Object> solver(ToLongFunction<SolverMeasures> extractor) {
+        return r -> r.getSolverMeasures() == null ? null : extractor.applyAsLong(r.getSolverMeasures());
+    }
+
+    private static Function<StatisticsRecord, Object> millis(Phase phase, ToLongFunction<PhaseTiming> extractor) {
+        return r -> {
+            PhaseTiming timing = r.getTimings() == null ? null : r.getTimings().asMap().get(phase);
+            long nanos = timing == null ? -1 : extractor.applyAsLong(timing);
+            return nanos < 0 ? null : nanos / 1_000_000.0;
+        };
+    }
+
+    private static Function<StatisticsRecord, Object> bytes(Phase phase) {
+        return r -> {
+            PhaseTiming timing = r.getTimings() == null ? null : r.getTimings().asMap().get(phase);
+            return timing == null || timing.getAllocatedBytes() < 0 ? null : timing.getAllocatedBytes();
+        };
+    }
+}
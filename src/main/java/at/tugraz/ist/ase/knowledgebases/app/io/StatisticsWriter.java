@@ -0,0 +1,22 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes statistics records, one record per knowledge base, in the order they are given.
+ * Each record is flushed after it is written.
+ */
+public interface StatisticsWriter extends Closeable {
+    void write(StatisticsRecord record) throws IOException;
+}
@@ -0,0 +1,163 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.io;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.ChocoModelProfile;
+import at.tugraz.ist.ase.knowledgebases.app.core.FMStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.Phase;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTiming;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTimings;
+import at.tugraz.ist.ase.knowledgebases.app.core.ProcessingError;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolutionSpaceStatistics;
+import at.tugraz.ist.ase.knowledgebases.app.core.SolverMeasures;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes statistics records as a human-readable "key: value" block per knowledge base,
+ * starting with the counter of the record.
+ */
+public class TextStatisticsWriter implements StatisticsWriter {
+
+    private final Writer writer;
+    private final Set<StatisticsColumn.Group> groups;
+
+    public TextStatisticsWriter(@NonNull Writer writer, @NonNull Set<StatisticsColumn.Group> groups) {
+        this.writer = writer;
+        this.groups = groups;
+    }
+
+    @Override
+    public void write(@NonNull StatisticsRecord record) throws IOException {
+        writer.write(record.getCounter() + "\n");
+        writer.write("Name: " + record.getName() + "\n");
+        // the statistics which weren't calculated are omitted
+        writeIfPresent("Source: ", record.getSource());
+        writeIfPresent("#variables: ", record.getNumVariables());
+        writeIfPresent("#constraints: ", record.getNumConstraints());
+        writeIfPresent("#Choco variables: ", record.getNumChocoVars());
+        writeIfPresent("#Choco constraints: ", record.getNumChocoConstraints());
+        writeIfPresent("Consistency: ", record.getConsistency());
+        if (record.isFailed()) {
+            writeError(record.getError());
+        }
+        if (groups.contains(StatisticsColumn.Group.SOLVER) && record.getSolverMeasures() != null) {
+            writeSolverMeasures(record.getSolverMeasures());
+        }
+
+        if (record.isFeatureModel()) {
+            writeFMStatistics(record.getFmStatistics());
+            if (groups.contains(StatisticsColumn.Group.FM_METRICS)) {
+                writeFMMetrics(record.getFmStatistics());
+            }
+        }
+        if (record.getSolutionSpace() != null) {
+            writeSolutionSpace(record.getSolutionSpace());
+        }
+        if (record.getChocoProfile() != null) {
+            writeChocoProfile(record.getChocoProfile());
+        }
+        if (groups.contains(StatisticsColumn.Group.TIMINGS) && record.getTimings() != null) {
+            writeTimings(record.getTimings());
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeIfPresent(String key, Object value) throws IOException {
+        if (value != null) {
+            writer.write(key + value + "\n");
+        }
+    }
+
+    private void writeError(ProcessingError error) throws IOException {
+        writer.write("Error: " + error.getException() + (error.getMessage() != null ? ": " + error.getMessage().replaceAll("\\R", " ") : "") + "\n");
+        writer.write("Error phase: " + (error.getPhase() != null ? error.getPhase().getLabel() : "n/a") + "\n");
+        writer.write("Elapsed time (ms): " + error.getElapsedNanos() / 1_000_000.0 + "\n");
+    }
+
+    private void writeSolverMeasures(SolverMeasures measures) throws IOException {
+        writer.write("#nodes: " + measures.getNodes() + "\n");
+        writer.write("#backtracks: " + measures.getBacktracks() + "\n");
+        writer.write("#fails: " + measures.getFails() + "\n");
+        writer.write("Solve time (s): " + measures.getSolveTimeSeconds() + "\n");
+    }
+
+    private void writeFMStatistics(FMStatistics fmStatistics) throws IOException {
+        writer.write("\n");
+        writer.write("CTC ratio: " + fmStatistics.getCtcRatio() + "\n");
+        writer.write("#features: " + fmStatistics.getNumFeatures() + "\n");
+        writer.write("#relationships: " + fmStatistics.getNumRelationships() + "\n");
+        writer.write("#constraints: " + fmStatistics.getNumConstraints() + "\n");
+        writer.write("#MANDATORY: " + fmStatistics.getNumMandatory() + "\n");
+        writer.write("#OPTIONAL: " + fmStatistics.getNumOptional() + "\n");
+        writer.write("#ALTERNATIVE: " + fmStatistics.getNumAlternative() + "\n");
+        writer.write("#OR: " + fmStatistics.getNumOr() + "\n");
+        writer.write("#REQUIRES: " + fmStatistics.getNumRequires() + "\n");
+        writer.write("#EXCLUDES: " + fmStatistics.getNumExcludes() + "\n");
+    }
+
+    private void writeFMMetrics(FMStatistics fmStatistics) throws IOException {
+        writer.write("Tree depth: " + fmStatistics.getTreeDepth() + "\n");
+        writer.write("#leaves: " + fmStatistics.getNumLeaves() + "\n");
+        writer.write("Max branching factor: " + fmStatistics.getMaxBranchingFactor() + "\n");
+        writer.write("Avg branching factor: " + fmStatistics.getAvgBranchingFactor() + "\n");
+        writer.write("Branching factors: " + fmStatistics.getBranchingFactorsAsString() + "\n");
+        writer.write("#CTC features: " + fmStatistics.getNumCTCFeatures() + "\n");
+        writer.write("Constraint density: " + fmStatistics.getConstraintDensity() + "\n");
+        writer.write("Avg group size: " + fmStatistics.getAvgGroupSize() + "\n");
+        writer.write("Max group size: " + fmStatistics.getMaxGroupSize() + "\n");
+    }
+
+    private void writeSolutionSpace(SolutionSpaceStatistics space) throws IOException {
+        writer.write("\n");
+        writer.write("#configurations: " + space.getNumConfigurations() + (space.isConfigurationsExact() ? " (exact)" : " (lower bound)") + "\n");
+        writer.write("#core features: " + space.getNumCoreFeatures() + precision(space.getNumCoreChecked(), space.getNumAnalyzedFeatures()) + "\n");
+        writer.write("#dead features: " + space.getNumDeadFeatures() + precision(space.getNumDeadChecked(), space.getNumAnalyzedFeatures()) + "\n");
+        writer.write("#false-optional features: " + space.getNumFalseOptionalFeatures() + precision(space.getNumFalseOptionalChecked(), space.getNumOptionalFeatures()) + "\n");
+    }
+
+    private void writeChocoProfile(ChocoModelProfile profile) throws IOException {
+        writer.write("\n");
+        for (ChocoModelProfile.Entry entry : profile.getEntries()) {
+            writer.write("Choco profile of " + entry.getConstruct() + ": "
+                    + entry.getNumConstraints() + " constraints, "
+                    + entry.getNumChocoConstraints() + " Choco constraints, "
+                    + entry.getNumPropagators() + " propagators, "
+                    + entry.getNumChocoVars() + " Choco variables, "
+                    + "domain size " + entry.getDomainSize() + "\n");
+        }
+    }
+
+    private static String precision(int checked, int total) {
+        return checked == total ? " (exact)" : " (lower bound, " + checked + "/" + total + " checked)";
+    }
+
+    private void writeTimings(PhaseTimings timings) throws IOException {
+        writer.write("\n");
+        for (Map.Entry<Phase, PhaseTiming> entry : timings.asMap().entrySet()) {
+            String label = entry.getKey().getLabel();
+            PhaseTiming timing = entry.getValue();
+
+            writer.write(label + " wall time (ms): " + timing.getWallNanos() / 1_000_000.0 + "\n");
+            writer.write(label + " CPU time (ms): " + (timing.getCpuNanos() < 0 ? "n/a" : timing.getCpuNanos() / 1_000_000.0) + "\n");
+            writer.write(label + " allocated bytes: " + (timing.getAllocatedBytes() < 0 ? "n/a" : timing.getAllocatedBytes()) + "\n");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.kb;
+
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+
+/**
+ * Provides a knowledge base which can be selected with -kb by its name.
+ * <p>
+ * Providers are found with {@link java.util.ServiceLoader}: a jar on the class path registers its providers
+ * in META-INF/services/at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseProvider.
+ * A provider must have a public no-argument constructor and should be cheap to create,
+ * since all providers are created to find one; the knowledge base itself is only built by {@link #create()}.
+ */
+public interface KnowledgeBaseProvider {
+
+    /**
+     * Rough heap usage of a knowledge base whose provider doesn't estimate it.
+     */
+    long DEFAULT_ESTIMATED_BYTES = 64L << 20;
+
+    /**
+     * The name of the knowledge base, e.g. "PC".
+     */
+    String getName();
+
+    /**
+     * A one-line description for --list-kbs.
+     */
+    default String getDescription() {
+        return "";
+    }
+
+    /**
+     * Builds a new instance of the knowledge base, with its own Choco model.
+     * Called once per copy, so it must not return a shared instance.
+     */
+    KB create();
+
+    /**
+     * Estimates the heap usage of the knowledge base with its Choco model, see -heap-budget.
+     */
+    default long estimateMemory() {
+        return DEFAULT_ESTIMATED_BYTES;
+    }
+}
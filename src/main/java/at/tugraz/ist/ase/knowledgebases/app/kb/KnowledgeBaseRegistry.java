@@ -0,0 +1,104 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.kb;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+/**
+ * The knowledge bases which can be selected with -kb, i.e., the {@link KnowledgeBaseProvider}s on the class path.
+ * The providers are looked up once; a knowledge base is only built when it is requested.
+ * Names are matched case-insensitively, and the first provider of a name wins.
+ */
+public class KnowledgeBaseRegistry {
+
+    private static volatile KnowledgeBaseRegistry defaultRegistry;
+
+    private final Map<String, KnowledgeBaseProvider> providers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public KnowledgeBaseRegistry(@NonNull Iterable<? extends KnowledgeBaseProvider> providers) {
+        for (KnowledgeBaseProvider provider : providers) {
+            KnowledgeBaseProvider previous = this.providers.putIfAbsent(provider.getName(), provider);
+            if (previous != null) {
+                System.out.println("Ignored " + provider.getClass().getName() + " - the knowledge base "
+                        + provider.getName() + " is already provided by " + previous.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Returns the registry of the providers found by {@link ServiceLoader} with the context class loader.
+     * Providers which can't be loaded are reported and skipped.
+     */
+    public static KnowledgeBaseRegistry getDefault() {
+        if (defaultRegistry == null) {
+            synchronized (KnowledgeBaseRegistry.class) {
+                if (defaultRegistry == null) {
+                    defaultRegistry = new KnowledgeBaseRegistry(loadProviders());
+                }
+            }
+        }
+        return defaultRegistry;
+    }
+
+    private static List<KnowledgeBaseProvider> loadProviders() {
+        List<KnowledgeBaseProvider> providers = new ArrayList<>();
+        for (ServiceLoader.Provider<KnowledgeBaseProvider> provider : ServiceLoader.load(KnowledgeBaseProvider.class)
+                .stream().toList()) {
+            try {
+                providers.add(provider.get());
+            } catch (ServiceConfigurationError e) {
+                System.out.println("Skipped the knowledge base provider " + provider.type().getName() + " - " + e.getMessage());
+            }
+        }
+        return providers;
+    }
+
+    public Optional<KnowledgeBaseProvider> find(@NonNull String name) {
+        return Optional.ofNullable(providers.get(name));
+    }
+
+    /**
+     * Returns the provider of the given knowledge base.
+     * @throws IllegalArgumentException if no provider has this name
+     */
+    public KnowledgeBaseProvider get(@NonNull String name) {
+        return find(name).orElseThrow(() -> new IllegalArgumentException("The knowledge base " + name
+                + " is not supported. Supported knowledge bases: " + String.join(", ", providers.keySet())));
+    }
+
+    /**
+     * Returns the providers sorted by name.
+     */
+    public List<KnowledgeBaseProvider> getProviders() {
+        return Collections.unmodifiableList(new ArrayList<>(providers.values()));
+    }
+
+    /**
+     * Returns the table printed by --list-kbs, a line per knowledge base with its name and description.
+     */
+    public String toListing() {
+        int width = providers.keySet().stream().mapToInt(String::length).max().orElse(0);
+        StringBuilder listing = new StringBuilder();
+        for (KnowledgeBaseProvider provider : providers.values()) {
+            listing.append(String.format(Locale.ROOT, "%-" + (width + 2) + "s%s", provider.getName(), provider.getDescription())
+                    .stripTrailing()).append('\n');
+        }
+        return listing.toString();
+    }
+}
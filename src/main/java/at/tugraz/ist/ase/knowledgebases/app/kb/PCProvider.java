@@ -0,0 +1,33 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.kb;
+
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import at.tugraz.ist.ase.knowledgebases.pc.PCKB;
+
+/**
+ * The PC configuration knowledge base from https://www.itu.dk/research/cla/externals/clib/.
+ */
+public class PCProvider implements KnowledgeBaseProvider {
+
+    @Override
+    public String getName() {
+        return "PC";
+    }
+
+    @Override
+    public String getDescription() {
+        return "PC configuration knowledge base (CLib)";
+    }
+
+    @Override
+    public KB create() {
+        return new PCKB(false);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.kb;
+
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import at.tugraz.ist.ase.knowledgebases.renault.RenaultKB;
+
+/**
+ * The Renault car configuration knowledge base from https://www.itu.dk/research/cla/externals/clib/.
+ */
+public class RenaultProvider implements KnowledgeBaseProvider {
+
+    @Override
+    public String getName() {
+        return "Renault";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Renault car configuration knowledge base (CLib)";
+    }
+
+    @Override
+    public KB create() {
+        return new RenaultKB(false);
+    }
+
+    /**
+     * Its Choco model is by far the largest of the built-in knowledge bases.
+     */
+    @Override
+    public long estimateMemory() {
+        return 1L << 30;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.metrics;
+
+import lombok.NonNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the metrics of a run while it is running: as an MXBean under {@link #OBJECT_NAME},
+ * and optionally as a file in the Prometheus text format, e.g., for the textfile collector of the node exporter.
+ * The file is replaced atomically at a fixed interval and once more when the run ends.
+ */
+public class MetricsExporter implements AutoCloseable {
+
+    public static final String OBJECT_NAME = "at.tugraz.ist.ase.knowledgebases:type=KBStatistics";
+
+    private final RunMetrics metrics;
+    private final Path file;
+    private final ObjectName objectName;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param file the Prometheus text file, null for JMX only
+     * @param intervalSeconds the interval of updating the file
+     */
+    public MetricsExporter(@NonNull RunMetrics metrics, Path file, long intervalSeconds) throws IOException {
+        this.metrics = metrics;
+        this.file = file;
+
+        try {
+            objectName = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // a previous run in the same JVM
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            throw new IOException("Couldn't register the metrics MBean", e);
+        }
+
+        if (file != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "kbstatistics-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::writeQuietly, 0, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Writes the metrics to the file, replacing the previous ones.
+     */
+    public void write() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, metrics.toPrometheusText(), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                write();
+            }
+        } finally {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // already unregistered by a later run
+            }
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException e) {
+            System.out.println("Couldn't write the metrics to " + file + ": " + e.getMessage());
+        }
+    }
+}
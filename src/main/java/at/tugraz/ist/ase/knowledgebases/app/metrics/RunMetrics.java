@@ -0,0 +1,198 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.metrics;
+
+import at.tugraz.ist.ase.knowledgebases.app.cache.StatisticsCache;
+import at.tugraz.ist.ase.knowledgebases.app.core.Phase;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTiming;
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTimings;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.NonNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counters and per-phase latency histograms of a run, updated while the knowledge bases are processed.
+ * Read by JMX and by the exporter of the Prometheus text format, see {@link MetricsExporter}.
+ */
+public class RunMetrics implements RunMetricsMXBean {
+
+    /**
+     * The upper bounds in seconds of the buckets of the phase latency histograms.
+     */
+    static final double[] BUCKETS = {0.001, 0.01, 0.1, 1, 10, 60, 600};
+
+    private final StatisticsCache cache;
+
+    private long discovered;
+    private long processed;
+    private long failed;
+    private long submitted;
+    private long solverNodes;
+    private final Map<Phase, long[]> bucketCounts = new EnumMap<>(Phase.class);
+    private final Map<Phase, Long> phaseCounts = new EnumMap<>(Phase.class);
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    /**
+     * @param cache the cache of the run, null if the cache is bypassed
+     */
+    public RunMetrics(StatisticsCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Counts a knowledge base found in the input.
+     */
+    public synchronized void discovered() {
+        discovered++;
+    }
+
+    /**
+     * Counts a knowledge base submitted for processing.
+     */
+    public synchronized void submitted() {
+        submitted++;
+    }
+
+    /**
+     * Counts a written record and adds its measurements.
+     */
+    public synchronized void written(@NonNull StatisticsRecord record) {
+        processed++;
+        if (record.isFailed()) {
+            failed++;
+        }
+        if (record.getSolverMeasures() != null) {
+            solverNodes += record.getSolverMeasures().getNodes();
+        }
+        if (record.getTimings() != null) {
+            addAll(record.getTimings());
+        }
+    }
+
+    public synchronized void addAll(@NonNull PhaseTimings timings) {
+        timings.asMap().forEach(this::add);
+    }
+
+    private void add(Phase phase, PhaseTiming timing) {
+        double seconds = timing.getWallNanos() / 1e9;
+        long[] counts = bucketCounts.computeIfAbsent(phase, p -> new long[BUCKETS.length]);
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (seconds <= BUCKETS[i]) {
+                counts[i]++;
+            }
+        }
+        phaseCounts.merge(phase, 1L, Long::sum);
+        phaseNanos.merge(phase, timing.getWallNanos(), Long::sum);
+    }
+
+    @Override
+    public synchronized long getDiscovered() {
+        return discovered;
+    }
+
+    @Override
+    public synchronized long getProcessed() {
+        return processed;
+    }
+
+    @Override
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public synchronized long getQueueDepth() {
+        return submitted - processed;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    @Override
+    public synchronized long getSolverNodes() {
+        return solverNodes;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        phaseCounts.forEach((phase, count) -> counts.put(phase.getLabel(), count));
+        return counts;
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPhaseSeconds() {
+        Map<String, Double> seconds = new LinkedHashMap<>();
+        phaseNanos.forEach((phase, nanos) -> seconds.put(phase.getLabel(), nanos / 1e9));
+        return seconds;
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format.
+     */
+    public synchronized String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        counter(text, "kbstatistics_discovered_total", "Knowledge bases found in the input.", discovered);
+        counter(text, "kbstatistics_processed_total", "Knowledge bases whose statistics were written.", processed);
+        counter(text, "kbstatistics_failed_total", "Knowledge bases which failed.", failed);
+        gauge(text, "kbstatistics_queue_depth", "Knowledge bases submitted but not yet written.", submitted - processed);
+        counter(text, "kbstatistics_cache_hits_total", "Statistics taken from the cache.", getCacheHits());
+        counter(text, "kbstatistics_cache_misses_total", "Statistics not found in the cache.", getCacheMisses());
+        counter(text, "kbstatistics_solver_nodes_total", "Nodes of the consistency checks.", solverNodes);
+        gauge(text, "kbstatistics_heap_used_bytes", "Heap in use.", getHeapUsedBytes());
+
+        String name = "kbstatistics_phase_duration_seconds";
+        text.append("# HELP ").append(name).append(" Wall-clock time of the phases of processing a knowledge base.\n");
+        text.append("# TYPE ").append(name).append(" histogram\n");
+        for (Map.Entry<Phase, long[]> entry : bucketCounts.entrySet()) {
+            String phase = entry.getKey().name().toLowerCase(Locale.ROOT);
+            long[] counts = entry.getValue();
+            for (int i = 0; i < BUCKETS.length; i++) {
+                text.append(name).append("_bucket{phase=\"").append(phase).append("\",le=\"").append(BUCKETS[i])
+                        .append("\"} ").append(counts[i]).append('\n');
+            }
+            long count = phaseCounts.get(entry.getKey());
+            text.append(name).append("_bucket{phase=\"").append(phase).append("\",le=\"+Inf\"} ").append(count).append('\n');
+            text.append(name).append("_sum{phase=\"").append(phase).append("\"} ").append(phaseNanos.get(entry.getKey()) / 1e9).append('\n');
+            text.append(name).append("_count{phase=\"").append(phase).append("\"} ").append(count).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        metric(text, name, help, "counter", value);
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, long value) {
+        metric(text, name, help, "gauge", value);
+    }
+
+    private static void metric(StringBuilder text, String name, String help, String type, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        text.append(name).append(' ').append(value).append('\n');
+    }
+}
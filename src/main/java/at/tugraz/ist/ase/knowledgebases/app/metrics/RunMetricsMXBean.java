@@ -0,0 +1,45 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.metrics;
+
+import java.util.Map;
+
+/**
+ * The live metrics of a run, exposed through JMX.
+ */
+public interface RunMetricsMXBean {
+    long getDiscovered();
+
+    long getProcessed();
+
+    long getFailed();
+
+    /**
+     * The number of knowledge bases submitted but not yet written.
+     */
+    long getQueueDepth();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getSolverNodes();
+
+    long getHeapUsedBytes();
+
+    /**
+     * The number of measurements of each phase, keyed by the phase's label.
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * The total wall-clock time in seconds of each phase, keyed by the phase's label.
+     */
+    Map<String, Double> getPhaseSeconds();
+}
@@ -0,0 +1,87 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.sample;
+
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelSource;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelWalker;
+import at.tugraz.ist.ase.knowledgebases.app.shard.Shard;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Walks a directory of feature models and hands the models of a {@link Sample} to a visitor, in the order of the walk.
+ * <p>
+ * The models of a fraction are handed over while the directory is walked. For a fixed size, the directory is walked
+ * first, keeping only the sampled models, which are then handed over.
+ */
+public class FeatureModelSampler {
+
+    private record Candidate(long position, double priority, FeatureModelSource source) {
+    }
+
+    private final Sample sample;
+    private final FeatureModelWalker walker;
+
+    /**
+     * The number of feature models of the directory, known after {@link #walk}.
+     */
+    @Getter
+    private long populationSize;
+
+    public FeatureModelSampler(@NonNull Sample sample, int maxDepth) {
+        this.sample = sample;
+        this.walker = new FeatureModelWalker(maxDepth);
+    }
+
+    /**
+     * Hands the sampled feature models of the given directory to the visitor.
+     * @return the number of sampled feature models
+     */
+    public int walk(@NonNull Path dir, @NonNull FeatureModelWalker.Visitor visitor) throws IOException, FeatureModelParserException {
+        populationSize = 0;
+        if (sample.isFraction()) {
+            int[] numSampled = {0};
+            walker.walk(dir, source -> {
+                populationSize++;
+                if (sample.priority(Shard.keyOf(dir, source.getPath())) < sample.getFraction()) {
+                    numSampled[0]++;
+                    visitor.visit(source);
+                }
+            });
+            return numSampled[0];
+        }
+
+        // the models with the lowest priorities, the highest first
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::priority).reversed());
+        walker.walk(dir, source -> {
+            Candidate candidate = new Candidate(populationSize++, sample.priority(Shard.keyOf(dir, source.getPath())), source);
+            if (candidates.size() < sample.getSize()) {
+                candidates.add(candidate);
+            } else if (candidate.priority() < candidates.peek().priority()) {
+                candidates.poll();
+                candidates.add(candidate);
+            }
+        });
+
+        List<Candidate> sampled = new ArrayList<>(candidates);
+        sampled.sort(Comparator.comparingLong(Candidate::position));
+        for (Candidate candidate : sampled) {
+            visitor.visit(candidate.source());
+        }
+        return sampled.size();
+    }
+}
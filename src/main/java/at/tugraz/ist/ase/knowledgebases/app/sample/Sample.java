@@ -0,0 +1,95 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.sample;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A reproducible random sample of the feature models of a corpus, either of a fixed size, e.g., "500",
+ * or a fraction of the corpus, e.g., "0.01" or "1%".
+ * <p>
+ * Each feature model gets a random priority from the hash of its key (see {@link at.tugraz.ist.ase.knowledgebases.app.shard.Shard#keyOf})
+ * and the seed. A sample of size k consists of the k models with the lowest priorities, a fraction p of the models
+ * with a priority below p. So the same seed selects the same models in whatever order the corpus is listed.
+ */
+@Getter
+public class Sample {
+
+    /**
+     * The number of models, 0 for a fraction.
+     */
+    private final int size;
+    /**
+     * The fraction of the models, 0 for a fixed size.
+     */
+    private final double fraction;
+    private final long seed;
+
+    private final HashFunction hashFunction;
+
+    private Sample(int size, double fraction, long seed) {
+        this.size = size;
+        this.fraction = fraction;
+        this.seed = seed;
+        this.hashFunction = Hashing.murmur3_128((int) (seed ^ (seed >>> 32)));
+    }
+
+    /**
+     * Parses a sample given as a size, e.g., "500", or as a fraction, e.g., "0.01" or "1%".
+     * @throws IllegalArgumentException if the sample isn't in one of these forms
+     */
+    public static Sample parse(@NonNull String sample, long seed) {
+        String value = sample.trim();
+        try {
+            if (value.endsWith("%")) {
+                return ofFraction(Double.parseDouble(value.substring(0, value.length() - 1).trim()) / 100, seed);
+            } else if (value.contains(".")) {
+                return ofFraction(Double.parseDouble(value), seed);
+            }
+            return ofSize(Integer.parseInt(value), seed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The sample must be a number of models, e.g. 500, or a fraction, e.g. 0.01 or 1%.", e);
+        }
+    }
+
+    public static Sample ofSize(int size, long seed) {
+        checkArgument(size > 0, "The sample size must be positive.");
+
+        return new Sample(size, 0, seed);
+    }
+
+    public static Sample ofFraction(double fraction, long seed) {
+        checkArgument(fraction > 0 && fraction <= 1, "The sample fraction must be in (0, 1].");
+
+        return new Sample(0, fraction, seed);
+    }
+
+    public boolean isFraction() {
+        return fraction > 0;
+    }
+
+    /**
+     * Returns the priority of the feature model with the given key, uniformly distributed in [0, 1).
+     */
+    public double priority(@NonNull String key) {
+        return (hashFunction.hashString(key, StandardCharsets.UTF_8).asLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public String toString() {
+        return (isFraction() ? fraction * 100 + "%" : String.valueOf(size)) + " (seed " + seed + ")";
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.sample;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTiming;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import com.google.common.math.StatsAccumulator;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Estimates the statistics of a corpus from the records of a sample of its feature models.
+ * <p>
+ * Each numeric statistic is estimated by its mean over the sampled models, with a 95% confidence interval
+ * of the normal approximation and the finite population correction. The consistencies and failures are estimated
+ * as proportions of the corpus. The time of the full run is extrapolated from the time of the sample run,
+ * with the relative confidence interval of the mean processing time of a model.
+ * Not thread-safe, is only used by the single writer.
+ */
+public class SampleEstimator {
+
+    private static final double Z_95 = 1.959964;
+
+    private final Set<StatisticsColumn.Group> groups;
+    private final Map<StatisticsColumn, StatsAccumulator> statistics = new EnumMap<>(StatisticsColumn.class);
+    private final Map<String, Integer> numPerConsistency = new TreeMap<>();
+    private final StatsAccumulator processingNanos = new StatsAccumulator();
+    @Getter
+    private int numSampled;
+    private int numFailed;
+
+    /**
+     * @param groups the column groups whose statistics are estimated
+     */
+    public SampleEstimator(@NonNull Set<StatisticsColumn.Group> groups) {
+        this.groups = groups;
+    }
+
+    public void add(@NonNull StatisticsRecord record) {
+        numSampled++;
+        if (record.isFailed()) {
+            numFailed++;
+            return;
+        }
+
+        for (StatisticsColumn column : StatisticsColumn.values()) {
+            if (column != StatisticsColumn.COUNTER && groups.contains(column.getGroup())
+                    && column.valueOf(record) instanceof Number value) {
+                statistics.computeIfAbsent(column, c -> new StatsAccumulator()).add(value.doubleValue());
+            }
+        }
+        if (record.getConsistency() != null) {
+            numPerConsistency.merge(record.getConsistency().name().toLowerCase(), 1, Integer::sum);
+        }
+        if (record.getTimings() != null && !record.getTimings().asMap().isEmpty()) {
+            processingNanos.add(record.getTimings().asMap().values().stream().mapToLong(PhaseTiming::getWallNanos).sum());
+        }
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean of the given values,
+     * NaN if there are less than two values.
+     * @param populationSize the number of models of the corpus
+     */
+    static double halfWidth(StatsAccumulator values, long populationSize) {
+        if (values.count() < 2) {
+            return Double.NaN;
+        }
+        return Z_95 * values.sampleStandardDeviation() / Math.sqrt(values.count()) * correction(values.count(), populationSize);
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of a proportion of the sample.
+     */
+    static double halfWidth(double proportion, long sampleSize, long populationSize) {
+        if (sampleSize < 2) {
+            return Double.NaN;
+        }
+        return Z_95 * Math.sqrt(proportion * (1 - proportion) / sampleSize) * correction(sampleSize, populationSize);
+    }
+
+    /**
+     * The finite population correction, 0 if the whole corpus was sampled.
+     */
+    private static double correction(long sampleSize, long populationSize) {
+        if (populationSize <= 1) {
+            return 0;
+        }
+        return Math.sqrt(Math.max(0, (double) (populationSize - sampleSize) / (populationSize - 1)));
+    }
+
+    /**
+     * Returns the estimates of the corpus as a table.
+     * @param populationSize the number of models of the corpus
+     * @param elapsedNanos the wall-clock time of the sample run
+     */
+    public String toTable(long populationSize, long elapsedNanos) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("Sampled %d of %d feature models (%.2f%%), %d failed%n",
+                numSampled, populationSize, populationSize == 0 ? 0 : 100.0 * numSampled / populationSize, numFailed));
+
+        table.append(String.format("%n%-26s %8s %16s %16s%n", "Statistic", "#KBs", "mean", "95% CI"));
+        statistics.forEach((column, values) -> table.append(String.format("%-26s %8d %16s %16s%n",
+                column.getKey(), values.count(), format(values.mean()), interval(halfWidth(values, populationSize)))));
+
+        table.append(String.format("%n%-26s %8s %16s %16s%n", "Proportion", "#KBs", "share", "95% CI"));
+        numPerConsistency.forEach((consistency, count) -> appendProportion(table, consistency, count, populationSize));
+        appendProportion(table, "failed", numFailed, populationSize);
+
+        if (numSampled > 0) {
+            long estimatedNanos = (long) ((double) elapsedNanos * populationSize / numSampled);
+            double relativeHalfWidth = processingNanos.count() < 2 || processingNanos.mean() == 0
+                    ? Double.NaN : halfWidth(processingNanos, populationSize) / processingNanos.mean();
+            table.append(String.format("%nEstimated time of the full run: %s%s (the sample took %s)%n",
+                    duration(estimatedNanos),
+                    Double.isNaN(relativeHalfWidth) ? "" : " +/- " + duration((long) (estimatedNanos * relativeHalfWidth)),
+                    duration(elapsedNanos)));
+        }
+        return table.toString();
+    }
+
+    private void appendProportion(StringBuilder table, String label, int count, long populationSize) {
+        double proportion = numSampled == 0 ? 0 : (double) count / numSampled;
+        double halfWidth = halfWidth(proportion, numSampled, populationSize);
+        table.append(String.format("%-26s %8d %15.2f%% %16s%n", label, count, proportion * 100,
+                Double.isNaN(halfWidth) ? "n/a" : String.format("+/- %.2f%%", halfWidth * 100)));
+    }
+
+    private static String interval(double halfWidth) {
+        return Double.isNaN(halfWidth) ? "n/a" : "+/- " + format(halfWidth);
+    }
+
+    private static String format(double value) {
+        return Math.abs(value) >= 1e6 ? String.format("%.4g", value) : String.format("%.3f", value);
+    }
+
+    private static String duration(long nanos) {
+        Duration duration = Duration.ofNanos(nanos);
+        if (duration.toHours() > 0) {
+            return String.format("%dh %02dm %02ds", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
+        } else if (duration.toMinutes() > 0) {
+            return String.format("%dm %02ds", duration.toMinutes(), duration.toSecondsPart());
+        }
+        return String.format("%.3f s", nanos / 1e9);
+    }
+}
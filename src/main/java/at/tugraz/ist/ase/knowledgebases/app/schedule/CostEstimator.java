@@ -0,0 +1,136 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.schedule;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.PhaseTiming;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Estimates the cost of calculating the statistics of a knowledge base before it is processed,
+ * for dispatching the most expensive ones first.
+ * <p>
+ * The cost of a knowledge base processed by an earlier run is its wall-clock time then, kept in a history file.
+ * Otherwise, the cost is derived from its estimated heap usage, i.e., the file size of a feature model,
+ * converted to nanoseconds by the average time per estimated byte of the history. Without a history,
+ * the costs are the estimated heap usages. Without a history file, e.g., with -no-cache, nothing is loaded or saved.
+ * Not thread-safe, is only used by the thread submitting the tasks, which also writes the records.
+ */
+public class CostEstimator {
+
+    private record Entry(long estimatedBytes, long wallNanos) {
+    }
+
+    private final Path historyFile;
+    /**
+     * The costs of the earlier runs by input, sorted by input.
+     */
+    private final Map<String, Entry> history = new TreeMap<>();
+    /**
+     * The estimated heap usage of the inputs of this run.
+     */
+    private final Map<String, Long> estimatedBytes = new HashMap<>();
+    private final double nanosPerByte;
+
+    @Getter
+    private int numKnown;
+    @Getter
+    private int numEstimated;
+
+    /**
+     * Loads the history of the given file, if it exists.
+     * @param historyFile the history file, or null to estimate all costs from the sizes without keeping a history
+     */
+    public CostEstimator(Path historyFile) throws IOException {
+        this.historyFile = historyFile;
+
+        if (historyFile != null && Files.exists(historyFile)) {
+            List<String> lines = Files.readAllLines(historyFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    try {
+                        history.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                    } catch (NumberFormatException e) {
+                        // a damaged line is skipped
+                    }
+                }
+            }
+        }
+
+        long bytes = 0;
+        long nanos = 0;
+        for (Entry entry : history.values()) {
+            if (entry.estimatedBytes() > 0) {
+                bytes += entry.estimatedBytes();
+                nanos += entry.wallNanos();
+            }
+        }
+        this.nanosPerByte = bytes > 0 ? (double) nanos / bytes : 1;
+    }
+
+    /**
+     * Returns the expected cost of the knowledge base with the given input, i.e., the path of the feature model file
+     * or the name of the built-in knowledge base.
+     * @param estimatedBytes the estimated heap usage of the knowledge base
+     */
+    public long estimate(@NonNull String input, long estimatedBytes) {
+        this.estimatedBytes.put(input, estimatedBytes);
+
+        Entry entry = history.get(input);
+        if (entry != null) {
+            numKnown++;
+            return entry.wallNanos();
+        }
+        numEstimated++;
+        return (long) (estimatedBytes * nanosPerByte);
+    }
+
+    /**
+     * Adds the wall-clock time of the given record to the history. Records without timings, e.g., cached ones,
+     * and failed records are skipped.
+     */
+    public void record(@NonNull StatisticsRecord record) {
+        Long bytes = estimatedBytes.get(record.getInput());
+        if (bytes == null || record.isFailed() || record.getTimings() == null || record.getTimings().asMap().isEmpty()) {
+            return;
+        }
+        long wallNanos = record.getTimings().asMap().values().stream().mapToLong(PhaseTiming::getWallNanos).sum();
+        history.put(record.getInput(), new Entry(bytes, wallNanos));
+    }
+
+    /**
+     * Writes the history, a line "input TAB estimated bytes TAB wall nanos" per knowledge base, if there is a history file.
+     */
+    public void save() throws IOException {
+        if (historyFile == null) {
+            return;
+        }
+        Files.createDirectories(historyFile.toAbsolutePath().getParent());
+        try (BufferedWriter out = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : history.entrySet()) {
+                // an input with a tab or a line break can't be stored
+                if (entry.getKey().indexOf('\t') < 0 && entry.getKey().indexOf('\n') < 0 && entry.getKey().indexOf('\r') < 0) {
+                    out.write(entry.getKey() + "\t" + entry.getValue().estimatedBytes() + "\t" + entry.getValue().wallNanos() + "\n");
+                }
+            }
+        }
+    }
+}
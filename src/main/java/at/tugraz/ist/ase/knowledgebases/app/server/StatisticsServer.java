@@ -0,0 +1,224 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.server;
+
+import at.tugraz.ist.ase.knowledgebases.app.StatisticsCalculator;
+import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.generator.FeatureModelGenerator;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelSource;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsWriter;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-running statistics server on the loopback interface, which keeps the parsers, Choco
+ * and the JIT-compiled code warm between requests, so that a request only pays the actual computation.
+ * <p>
+ * Endpoints:
+ * - GET /statistics?path=&lt;feature model file&gt; - the statistics of a feature model file on the server's file system
+ * - GET /statistics?kb=&lt;name&gt; - the statistics of a registered knowledge base, e.g. PC or Renault
+ * - POST /statistics?name=&lt;file name&gt; - the statistics of the feature model in the request body,
+ * whose format is recognized from its content, or else from the extension of the name
+ * - GET /health - "OK" when the server accepts requests
+ * <p>
+ * The optional parameter format=jsonl|csv|text selects the format of the response (default jsonl).
+ * A failed knowledge base is answered with 422 and its error record.
+ */
+public class StatisticsServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StatisticsCalculator calculator;
+    private final Set<StatisticsColumn.Group> groups;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public StatisticsServer(@NonNull KBStatistics_CmdLineOptions options) throws IOException {
+        // failures are answered with error records instead of stopping the server
+        StatisticsCalculator fromOptions = StatisticsCalculator.of(options);
+        this.calculator = new StatisticsCalculator(fromOptions.getStatistics(), fromOptions.getSolveLimits(),
+                fromOptions.getPortfolioSize(), fromOptions.getCache(), true);
+        this.groups = options.getOutputGroups();
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getServerPort()), 0);
+        this.executor = Executors.newFixedThreadPool(options.getThreads());
+        server.setExecutor(executor);
+        server.createContext("/statistics", this::handleStatistics);
+        server.createContext("/health", this::handleHealth);
+    }
+
+    /**
+     * Processes a synthetic feature model the given number of times without the cache,
+     * so that the classes are loaded and the hot code is compiled before the first request.
+     */
+    public void warmUp(int iterations) throws IOException {
+        if (iterations <= 0) {
+            return;
+        }
+        System.out.println("Warming up with " + iterations + " synthetic feature models...");
+
+        StatisticsCalculator warmUpCalculator = new StatisticsCalculator(calculator.getStatistics(),
+                calculator.getSolveLimits(), calculator.getPortfolioSize(), null, true);
+        Path dir = Files.createTempDirectory("kbstatistics-warmup");
+        try {
+            File file = FeatureModelGenerator.builder().build().writeSXFM(dir.resolve("warmup.sxfm")).toFile();
+            for (int i = 0; i < iterations; i++) {
+                warmUpCalculator.fmTask(i + 1, file).call();
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("The warm-up failed", e);
+        } finally {
+            MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Listening on http://" + server.getAddress().getHostString() + ":" + getPort() + "/statistics");
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, "OK\n");
+        }
+    }
+
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            OutputFormat format;
+            try {
+                format = OutputFormat.valueOf(query.getOrDefault("format", "jsonl").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, "Unknown format: " + query.get("format") + "\n");
+                return;
+            }
+
+            StatisticsRecord record;
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    if (query.containsKey("path")) {
+                        record = calculator.fmTask(counter.incrementAndGet(), new File(query.get("path"))).call();
+                    } else if (query.containsKey("kb")) {
+                        record = calculator.kbTask(counter.incrementAndGet(), query.get("kb")).call();
+                    } else {
+                        send(exchange, 400, "Missing parameter: path or kb\n");
+                        return;
+                    }
+                }
+                case "POST" -> {
+                    if (!query.containsKey("name")) {
+                        send(exchange, 400, "Missing parameter: name\n");
+                        return;
+                    }
+                    record = processUpload(query.get("name"), exchange.getRequestBody());
+                }
+                default -> {
+                    exchange.getResponseHeaders().add("Allow", "GET, POST");
+                    send(exchange, 405, "Method not allowed\n");
+                    return;
+                }
+            }
+
+            StringWriter out = new StringWriter();
+            try (StatisticsWriter writer = format.createWriter(out, groups, false)) {
+                writer.write(record);
+            }
+            send(exchange, record.isFailed() ? 422 : 200, out.toString());
+        } catch (Exception e) {
+            // the calculator keeps going, so these are failures of the server itself
+            e.printStackTrace();
+            // the client gets an answer, unless the failure came after the response was started
+            if (exchange.getResponseCode() == -1) {
+                try {
+                    send(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage() + "\n");
+                } catch (IOException sendError) {
+                    e.addSuppressed(sendError);
+                }
+            }
+            throw e instanceof IOException ex ? ex : new IOException(e);
+        }
+    }
+
+    /**
+     * Calculates the statistics of the uploaded feature model, whose format is recognized from its content.
+     */
+    private StatisticsRecord processUpload(String name, InputStream body) throws Exception {
+        return calculator.fmTask(counter.incrementAndGet(), FeatureModelSource.of(name, sanitize(name), body.readAllBytes())).call();
+    }
+
+    /**
+     * Keeps only the file name of the given name and replaces unusual characters.
+     */
+    static String sanitize(String name) {
+        Path fileName = Paths.get(name.replace('\\', '/')).getFileName();
+        String sanitized = fileName == null ? "" : fileName.toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        return sanitized.isEmpty() || sanitized.startsWith(".") ? "model" + sanitized : sanitized;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int index = pair.indexOf('=');
+            String key = index < 0 ? pair : pair.substring(0, index);
+            String value = index < 0 ? "" : pair.substring(index + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.shard;
+
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * One of N disjoint slices of the knowledge bases of a run, e.g., "2/4" for the second of four machines.
+ * <p>
+ * A knowledge base belongs to the shard of the stable hash of its key: the name of a registered knowledge base,
+ * or the path of a feature model relative to -fm-dir, resp. to the directory of -fm. So each machine selects
+ * the same knowledge bases in whatever order it lists them and wherever it mounts the corpus.
+ */
+@Getter
+public class Shard {
+
+    /**
+     * The shard, from 1 to count.
+     */
+    private final int index;
+    private final int count;
+
+    public Shard(int index, int count) {
+        checkArgument(count > 0, "The number of shards must be positive.");
+        checkArgument(index >= 1 && index <= count, "The shard must be between 1 and " + count + ".");
+
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard given as "i/N", e.g., "1/4".
+     * @throws IllegalArgumentException if the shard isn't in this form
+     */
+    public static Shard parse(@NonNull String shard) {
+        int slash = shard.indexOf('/');
+        checkArgument(slash > 0, "The shard must be given as i/N, e.g., 1/4.");
+        try {
+            return new Shard(Integer.parseInt(shard.substring(0, slash).trim()), Integer.parseInt(shard.substring(slash + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The shard must be given as i/N, e.g., 1/4.", e);
+        }
+    }
+
+    /**
+     * Returns whether the knowledge base with the given key belongs to this shard.
+     */
+    public boolean contains(@NonNull String key) {
+        return Hashing.consistentHash(Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8), count) == index - 1;
+    }
+
+    /**
+     * Returns the key of a feature model, its path relative to the given root directory with "/" as separator,
+     * e.g., "sub/a.sxfm" or "models.zip!/a.sxfm".
+     */
+    public static String keyOf(@NonNull Path root, @NonNull String path) {
+        String dir = root.toString().replace('\\', '/');
+        String normalized = path.replace('\\', '/');
+        if (!dir.isEmpty() && normalized.startsWith(dir.endsWith("/") ? dir : dir + "/")) {
+            return normalized.substring(dir.length() + (dir.endsWith("/") ? 0 : 1));
+        }
+        return normalized;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.shard;
+
+import at.tugraz.ist.ase.knowledgebases.app.io.CsvStatisticsReader;
+import at.tugraz.ist.ase.knowledgebases.app.io.CsvStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsReader;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Merges the outputs of the shards of a run into one statistics file.
+ * <p>
+ * The records are sorted by their counters in the shards, then by input, and numbered from 1.
+ * Each shard numbers its knowledge bases like the whole run, so the merged order is the order of a run
+ * without shards if the machines list the inputs in the same order, and deterministic otherwise.
+ * A knowledge base in more than one shard means that the shards don't belong to the same run.
+ */
+public class ShardMerger {
+
+    private final List<Path> shards;
+    private final OutputFormat format;
+
+    @Getter
+    private int numSucceeded;
+    @Getter
+    private int numFailed;
+    /**
+     * The number of knowledge bases per consistency, e.g., "consistent" -> 120, sorted by consistency.
+     */
+    @Getter
+    private final Map<String, Integer> numPerConsistency = new TreeMap<>();
+
+    /**
+     * @param shards the outputs of the shards, all in the CSV or all in the JSON Lines format
+     */
+    public ShardMerger(@NonNull List<Path> shards) {
+        checkArgument(!shards.isEmpty(), "-merge needs the outputs of the shards.");
+
+        this.shards = shards;
+        this.format = formatOf(shards.get(0));
+        for (Path shard : shards) {
+            checkArgument(formatOf(shard) == format, "The outputs of the shards must have the same format, "
+                    + shard + " differs from " + shards.get(0) + ".");
+        }
+    }
+
+    /**
+     * Merges the outputs of the shards into the given file, in their format, and prints the combined summary.
+     * @return the number of merged records
+     */
+    public int merge(@NonNull Path outFile) throws IOException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        List<String> columns = null;
+        Map<String, Path> inputs = new HashMap<>();
+        for (Path shard : shards) {
+            System.out.println("Reading the statistics of " + shard + "...");
+            List<Map<String, Object>> shardRecords = format == OutputFormat.CSV
+                    ? CsvStatisticsReader.read(shard) : JsonLinesStatisticsReader.read(shard);
+            for (Map<String, Object> record : shardRecords) {
+                // the columns of a CSV line are only known from the header
+                if (columns == null) {
+                    columns = List.copyOf(record.keySet());
+                } else if (format == OutputFormat.CSV && !columns.equals(List.copyOf(record.keySet()))) {
+                    throw new IOException("The columns of " + shard + " differ from those of the other shards");
+                }
+                String input = String.valueOf(record.get(StatisticsColumn.INPUT.getKey()));
+                Path previous = inputs.putIfAbsent(input, shard);
+                if (previous != null) {
+                    throw new IOException(input + " is in " + previous + " and in " + shard
+                            + ", the shards don't belong to the same run");
+                }
+                records.add(record);
+            }
+        }
+
+        records.sort(Comparator.comparingLong(ShardMerger::counterOf)
+                .thenComparing(record -> String.valueOf(record.get(StatisticsColumn.INPUT.getKey()))));
+
+        numSucceeded = numFailed = 0;
+        numPerConsistency.clear();
+        @Cleanup BufferedWriter out = Files.newBufferedWriter(outFile, StandardCharsets.UTF_8);
+        if (format == OutputFormat.CSV) {
+            out.write((columns == null ? CsvStatisticsWriter.header() : String.join(",", columns)) + "\n");
+        }
+        int counter = 0;
+        for (Map<String, Object> record : records) {
+            record.put(StatisticsColumn.COUNTER.getKey(), ++counter);
+            out.write(format == OutputFormat.CSV ? toCsv(record) : toJson(record));
+            out.write('\n');
+            count(record);
+        }
+        out.flush();
+
+        System.out.println("\nSummary: " + records.size() + " knowledge bases of " + shards.size() + " shards, "
+                + numSucceeded + " succeeded, " + numFailed + " failed");
+        if (!numPerConsistency.isEmpty()) {
+            System.out.println("Consistency: " + numPerConsistency);
+        }
+        return records.size();
+    }
+
+    private void count(Map<String, Object> record) {
+        if (record.get(StatisticsColumn.ERROR.getKey()) != null) {
+            numFailed++;
+        } else {
+            numSucceeded++;
+        }
+        Object consistency = record.get(StatisticsColumn.CONSISTENCY.getKey());
+        if (consistency != null) {
+            numPerConsistency.merge(consistency.toString(), 1, Integer::sum);
+        }
+    }
+
+    private static long counterOf(Map<String, Object> record) {
+        Object counter = record.get(StatisticsColumn.COUNTER.getKey());
+        if (counter instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(Objects.toString(counter));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static String toCsv(Map<String, Object> record) {
+        List<String> fields = new ArrayList<>();
+        for (Object value : record.values()) {
+            fields.add(value == null ? "" : CsvStatisticsWriter.escape(value.toString()));
+        }
+        return String.join(",", fields);
+    }
+
+    private static String toJson(Map<String, Object> record) {
+        StringBuilder line = new StringBuilder("{");
+        record.forEach((key, value) -> {
+            if (line.length() > 1) {
+                line.append(',');
+            }
+            line.append(JsonLinesStatisticsWriter.quote(key)).append(':').append(JsonLinesStatisticsWriter.toJson(value));
+        });
+        return line.append('}').toString();
+    }
+
+    /**
+     * Returns the format of an output by its extension, .csv or .jsonl.
+     */
+    private static OutputFormat formatOf(Path shard) {
+        String name = shard.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return OutputFormat.CSV;
+        } else if (name.endsWith(".jsonl")) {
+            return OutputFormat.JSONL;
+        }
+        throw new IllegalArgumentException("Only CSV (.csv) and JSON Lines (.jsonl) outputs of shards can be merged, not " + shard + ".");
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.store;
+
+import at.tugraz.ist.ase.knowledgebases.app.io.CsvStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.OutputFormat;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import com.google.common.primitives.Doubles;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Filters and projects the records of a {@link StatisticsStore}, e.g., the name, features and CTC ratio
+ * of all consistent models with more than 500 features and a CTC ratio above 0.2:
+ * <pre>
+ * -where "consistency=consistent,features>500,ctc_ratio>0.2" -select name,features,ctc_ratio
+ * </pre>
+ * The conditions are comma-separated and must all hold. A condition compares a column with a value by
+ * =, !=, &lt;, &lt;=, &gt; or &gt;=, numerically if both are numbers, otherwise as strings.
+ * A missing value only satisfies !=. A condition input=... is answered with the index of the store.
+ */
+public class StatisticsQuery {
+
+    private static final List<String> OPERATORS = List.of("!=", "<=", ">=", "=", "<", ">");
+
+    /**
+     * One condition of the query, e.g., features>500.
+     */
+    @Getter
+    public static class Condition {
+        private final String column;
+        private final String operator;
+        private final String value;
+        /**
+         * The value as a number, null if it isn't one.
+         */
+        private final Double number;
+
+        Condition(String column, String operator, String value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+            this.number = Doubles.tryParse(value);
+        }
+
+        /**
+         * Parses a condition like "features>500".
+         */
+        static Condition parse(String condition) {
+            int position = -1;
+            String operator = null;
+            for (String candidate : OPERATORS) {
+                int index = condition.indexOf(candidate);
+                // the leftmost operator, and the longer one at the same position
+                if (index > 0 && (position < 0 || index < position)) {
+                    position = index;
+                    operator = candidate;
+                }
+            }
+            checkArgument(operator != null, "The condition " + condition + " has no operator of " + OPERATORS + ".");
+            return new Condition(condition.substring(0, position).trim(), operator,
+                    condition.substring(position + operator.length()).trim());
+        }
+
+        boolean test(Map<String, Object> record) {
+            Object actual = record.get(column);
+            if (actual == null) {
+                return operator.equals("!=");
+            }
+            int comparison = compare(actual);
+            return switch (operator) {
+                case "=" -> comparison == 0;
+                case "!=" -> comparison != 0;
+                case "<" -> comparison < 0;
+                case "<=" -> comparison <= 0;
+                case ">" -> comparison > 0;
+                default -> comparison >= 0;
+            };
+        }
+
+        private int compare(Object actual) {
+            if (actual instanceof Number actualNumber && number != null) {
+                return Double.compare(actualNumber.doubleValue(), number);
+            }
+            return actual.toString().compareTo(value);
+        }
+
+        @Override
+        public String toString() {
+            return column + operator + value;
+        }
+    }
+
+    @Getter
+    private final List<Condition> conditions;
+    /**
+     * The projected columns, all columns if empty.
+     */
+    @Getter
+    private final List<String> columns;
+
+    /**
+     * @param where the comma-separated conditions, null or empty for all records
+     * @param select the comma-separated columns, null or empty for all columns
+     */
+    public StatisticsQuery(String where, String select) {
+        this.conditions = split(where).stream().map(Condition::parse).toList();
+        this.columns = split(select);
+
+        List<String> known = Arrays.stream(StatisticsColumn.values()).map(StatisticsColumn::getKey).toList();
+        for (String column : columns) {
+            checkArgument(known.contains(column), "Unknown column " + column + ", the columns are " + known + ".");
+        }
+        for (Condition condition : conditions) {
+            checkArgument(known.contains(condition.column), "Unknown column " + condition.column + ", the columns are " + known + ".");
+        }
+    }
+
+    /**
+     * Returns the projected records of the store which satisfy all conditions, in the order of the store.
+     */
+    public List<Map<String, Object>> run(@NonNull StatisticsStore store) throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>();
+
+        Condition lookup = conditions.stream()
+                .filter(condition -> condition.column.equals(StatisticsColumn.INPUT.getKey()) && condition.operator.equals("="))
+                .findFirst().orElse(null);
+        if (lookup != null) {
+            store.get(lookup.value).filter(this::matches).ifPresent(record -> results.add(project(record)));
+        } else {
+            // only the columns of the conditions and the results are decoded
+            Set<String> decoded = new HashSet<>(columns.isEmpty() ? store.getColumns() : columns);
+            conditions.forEach(condition -> decoded.add(condition.column));
+            store.scan(decoded, record -> {
+                if (matches(record)) {
+                    results.add(project(record));
+                }
+            });
+        }
+        return results;
+    }
+
+    private boolean matches(Map<String, Object> record) {
+        for (Condition condition : conditions) {
+            if (!condition.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Object> project(Map<String, Object> record) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String column : columns.isEmpty() ? record.keySet() : columns) {
+            projected.put(column, record.get(column));
+        }
+        return projected;
+    }
+
+    /**
+     * Writes the results of a query: as CSV with a header of the columns, as JSON Lines,
+     * or as text, a line "column: value, ..." per record.
+     */
+    public static void write(@NonNull Writer out, @NonNull OutputFormat format, @NonNull List<String> columns,
+                             @NonNull List<Map<String, Object>> results) throws IOException {
+        if (format == OutputFormat.CSV) {
+            out.write(String.join(",", columns) + "\n");
+        }
+        for (Map<String, Object> record : results) {
+            out.write(switch (format) {
+                case CSV -> record.values().stream()
+                        .map(value -> value == null ? "" : CsvStatisticsWriter.escape(value.toString()))
+                        .collect(Collectors.joining(","));
+                case JSONL -> record.entrySet().stream()
+                        .map(entry -> JsonLinesStatisticsWriter.quote(entry.getKey()) + ":" + JsonLinesStatisticsWriter.toJson(entry.getValue()))
+                        .collect(Collectors.joining(",", "{", "}"));
+                case TEXT -> record.entrySet().stream()
+                        .map(entry -> entry.getKey() + ": " + Objects.toString(entry.getValue(), "n/a"))
+                        .collect(Collectors.joining(", "));
+            });
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private static List<String> split(String list) {
+        if (list == null) {
+            return List.of();
+        }
+        return Arrays.stream(list.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+}
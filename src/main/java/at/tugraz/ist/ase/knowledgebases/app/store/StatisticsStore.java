@@ -0,0 +1,473 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app.store;
+
+import at.tugraz.ist.ase.knowledgebases.app.core.StatisticsRecord;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsColumn;
+import at.tugraz.ist.ase.knowledgebases.app.io.StatisticsWriter;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A compact binary store of statistics records, which grows over runs, with an index on the input of each record,
+ * i.e., the path of the feature model file or the name of the knowledge base.
+ * <p>
+ * The store has a header with the column keys of {@link StatisticsColumn} and then one record after the other:
+ * the length of the record and a tagged value per column, e.g., a long or a string. The index file next to
+ * the store maps each input to the offset of its latest record, so a knowledge base processed again replaces its
+ * earlier record, and a record is looked up by its input with one seek. The index is written when the store is
+ * closed, and rebuilt from the store if it is missing or older than the store, e.g., after a crash.
+ * A record cut off by a crash is dropped when the store is opened for writing.
+ * <p>
+ * The store is row-oriented: the values of a record are stored together, so every query other than a lookup
+ * by input is a full sequential scan of the store, which only saves decoding the columns it doesn't need.
+ * <p>
+ * A store is written by one run at a time, which holds an exclusive lock on it. A store opened for reading,
+ * e.g., by a query, is never modified and takes no lock; it reads the records complete when it was opened.
+ * <p>
+ * Records are appended as they are written, so the store never has to hold a whole run.
+ */
+public class StatisticsStore implements StatisticsWriter {
+
+    private static final int MAGIC = 0x4B425354; // "KBST"
+    private static final int INDEX_MAGIC = 0x4B425349; // "KBSI"
+    private static final short VERSION = 1;
+    private static final long WINDOW_SIZE = 1 << 28;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte BOOLEAN = 4;
+
+    private final Path file;
+    private final Set<StatisticsColumn.Group> groups;
+    private final RandomAccessFile out;
+    private final boolean readOnly;
+    /**
+     * The offset after the last complete record.
+     */
+    private long end;
+
+    /**
+     * The column keys of the records.
+     */
+    @Getter
+    private final List<String> columns;
+    /**
+     * The offset of the latest record of each input, in the order the inputs were first written.
+     */
+    private final Map<String, Long> index = new LinkedHashMap<>();
+
+    /**
+     * Opens the given store, creating it if it doesn't exist.
+     * @param groups the column groups which are written, the values of other groups are stored as null
+     * @throws IOException if the store has other columns, i.e., was written by another version
+     */
+    public StatisticsStore(@NonNull Path file, @NonNull Set<StatisticsColumn.Group> groups) throws IOException {
+        this(file, groups, false);
+    }
+
+    private StatisticsStore(Path file, Set<StatisticsColumn.Group> groups, boolean readOnly) throws IOException {
+        this.file = file;
+        this.groups = groups;
+        this.readOnly = readOnly;
+
+        List<String> currentColumns = Arrays.stream(StatisticsColumn.values()).map(StatisticsColumn::getKey).toList();
+        this.out = new RandomAccessFile(file.toFile(), readOnly ? "r" : "rw");
+        try {
+            if (!readOnly) {
+                lock();
+            }
+            if (out.length() > 0) {
+                this.columns = readHeader(file);
+                if (!columns.equals(currentColumns)) {
+                    throw new IOException(file + " has other columns than this version of KBStatistics, use a new store");
+                }
+                loadIndex();
+            } else {
+                this.columns = currentColumns;
+                writeHeader();
+                end = out.length();
+            }
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+        out.seek(end);
+    }
+
+    /**
+     * Opens an existing store for reading, e.g., for queries, without modifying it.
+     */
+    public static StatisticsStore open(@NonNull Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            throw new IOException(file + " doesn't exist");
+        }
+        return new StatisticsStore(file, Set.of(StatisticsColumn.Group.values()), true);
+    }
+
+    /**
+     * Locks the store for writing until it is closed, waiting for another run writing it.
+     */
+    private void lock() throws IOException {
+        try {
+            if (out.getChannel().tryLock() == null) {
+                System.out.println("Waiting for another run writing " + file + "...");
+                out.getChannel().lock();
+            }
+        } catch (OverlappingFileLockException e) {
+            throw new IOException(file + " is already being written", e);
+        }
+    }
+
+    public static Path indexOf(@NonNull Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    @Override
+    public void write(@NonNull StatisticsRecord record) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (StatisticsColumn column : StatisticsColumn.values()) {
+            values.put(column.getKey(), groups.contains(column.getGroup()) ? column.valueOf(record) : null);
+        }
+        write(values);
+    }
+
+    /**
+     * Appends a record with the given values by column key, e.g., of an earlier output.
+     */
+    public void write(@NonNull Map<String, Object> values) throws IOException {
+        if (readOnly) {
+            throw new IOException(file + " is opened for reading only");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        for (String column : columns) {
+            writeValue(data, values.get(column));
+        }
+
+        long offset = end;
+        out.seek(offset);
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+        end = out.getFilePointer();
+
+        String input = String.valueOf(values.get(StatisticsColumn.INPUT.getKey()));
+        index.remove(input);
+        index.put(input, offset);
+    }
+
+    /**
+     * Returns the number of records, i.e., of inputs.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the inputs of the records, in the order they were first written.
+     */
+    public Set<String> getInputs() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * Returns the latest record of the given input.
+     */
+    public Optional<Map<String, Object>> get(@NonNull String input) throws IOException {
+        Long offset = index.get(input);
+        if (offset == null) {
+            return Optional.empty();
+        }
+        out.seek(offset);
+        byte[] bytes = new byte[out.readInt()];
+        out.readFully(bytes);
+        out.seek(end);
+        return Optional.of(readValues(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    /**
+     * Hands the latest record of each input to the given consumer, in the order of the store,
+     * reading the store sequentially.
+     */
+    public void scan(@NonNull Consumer<Map<String, Object>> consumer) throws IOException {
+        scan(Set.copyOf(columns), consumer);
+    }
+
+    /**
+     * Hands the given columns of the latest record of each input to the given consumer, in the order of the store.
+     * Reads the whole store; the values of the other columns are skipped without decoding them.
+     */
+    public void scan(@NonNull Set<String> columns, @NonNull Consumer<Map<String, Object>> consumer) throws IOException {
+        boolean[] decoded = new boolean[this.columns.size()];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = columns.contains(this.columns.get(i));
+        }
+
+        Set<Long> latest = new HashSet<>(index.values());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long offset = headerLength();
+            ByteBuffer window = null;
+            long windowStart = 0;
+            while (offset < end) {
+                if (window == null || offset + Integer.BYTES > windowStart + window.limit()) {
+                    windowStart = offset;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(end - windowStart, WINDOW_SIZE));
+                }
+                int length = window.getInt((int) (offset - windowStart));
+                if (offset + Integer.BYTES + length > windowStart + window.limit()) {
+                    windowStart = offset;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(end - windowStart, Math.max(WINDOW_SIZE, Integer.BYTES + length)));
+                }
+                if (latest.contains(offset)) {
+                    window.position((int) (offset - windowStart) + Integer.BYTES);
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    for (int i = 0; i < decoded.length; i++) {
+                        if (decoded[i]) {
+                            values.put(this.columns.get(i), readValue(window));
+                        } else {
+                            skipValue(window);
+                        }
+                    }
+                    consumer.accept(values);
+                }
+                offset += Integer.BYTES + length;
+            }
+        }
+    }
+
+    /**
+     * Writes the index, unless the store is opened for reading, and closes the store.
+     */
+    @Override
+    public void close() throws IOException {
+        if (readOnly) {
+            out.close();
+            return;
+        }
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexOf(file))))) {
+            index.writeInt(INDEX_MAGIC);
+            index.writeLong(end);
+            index.writeInt(this.index.size());
+            for (Map.Entry<String, Long> entry : this.index.entrySet()) {
+                writeString(index, entry.getKey());
+                index.writeLong(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(columns.size());
+        for (String column : columns) {
+            writeString(header, column);
+        }
+        out.write(bytes.toByteArray());
+    }
+
+    private static List<String> readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException(file + " is not a statistics store");
+            }
+            int numColumns = in.readInt();
+            String[] columns = new String[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                columns[i] = readString(in);
+            }
+            return List.of(columns);
+        }
+    }
+
+    /**
+     * Returns the length of the header, i.e., the offset of the first record.
+     */
+    private long headerLength() {
+        long length = Integer.BYTES + Short.BYTES + Integer.BYTES;
+        for (String column : columns) {
+            length += Integer.BYTES + column.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
+    /**
+     * Skips the header of the store.
+     * @return the offset of the first record
+     */
+    private long skipHeader(DataInputStream in) throws IOException {
+        long offset = Integer.BYTES + Short.BYTES + Integer.BYTES;
+        in.skipNBytes(offset);
+        for (int i = 0; i < columns.size(); i++) {
+            int length = in.readInt();
+            in.skipNBytes(length);
+            offset += Integer.BYTES + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Loads the index, or rebuilds it if it doesn't match the store. A record cut off at the end is dropped
+     * if the store is opened for writing, and ignored otherwise, since it may still be written by another run.
+     */
+    private void loadIndex() throws IOException {
+        Path indexFile = indexOf(file);
+        long length = out.length();
+        if (Files.exists(indexFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                if (in.readInt() == INDEX_MAGIC && in.readLong() == length) {
+                    int size = in.readInt();
+                    for (int i = 0; i < size; i++) {
+                        index.put(readString(in), in.readLong());
+                    }
+                    end = length;
+                    return;
+                }
+            } catch (EOFException e) {
+                index.clear();
+            }
+        }
+
+        System.out.println("Rebuilding the index of " + file + "...");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            long offset = skipHeader(in);
+            int inputColumn = columns.indexOf(StatisticsColumn.INPUT.getKey());
+            while (offset + Integer.BYTES <= length) {
+                int recordLength = in.readInt();
+                if (offset + Integer.BYTES + recordLength > length) {
+                    break;
+                }
+                byte[] bytes = in.readNBytes(recordLength);
+                Object input = readValues(new DataInputStream(new ByteArrayInputStream(bytes))).get(columns.get(inputColumn));
+                index.remove(String.valueOf(input));
+                index.put(String.valueOf(input), offset);
+                offset += Integer.BYTES + recordLength;
+            }
+            if (offset < length && !readOnly) {
+                System.out.println("Dropped a record cut off at the end of " + file);
+                out.setLength(offset);
+            }
+            end = offset;
+        }
+    }
+
+    private Map<String, Object> readValues(DataInputStream in) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String column : columns) {
+            values.put(column, readValue(in));
+        }
+        return values;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    /**
+     * Reads a value as a Long, Double, String, Boolean or null, like {@link at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsReader}.
+     */
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case STRING -> readString(in);
+            default -> throw new IOException("Unknown value type " + tag);
+        };
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        return switch (tag) {
+            case NULL -> null;
+            case LONG -> in.getLong();
+            case DOUBLE -> in.getDouble();
+            case BOOLEAN -> in.get() != 0;
+            case STRING -> {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+            default -> throw new IOException("Unknown value type " + tag);
+        };
+    }
+
+    private static void skipValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL -> { }
+            case LONG, DOUBLE -> in.position(in.position() + Long.BYTES);
+            case BOOLEAN -> in.position(in.position() + 1);
+            case STRING -> {
+                int length = in.getInt();
+                in.position(in.position() + length);
+            }
+            default -> throw new IOException("Unknown value type " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * KBStatistics
+ *
+ * Copyright (c) 2022-2022
+ *
+ * @author: Viet-Man Le (vietman.le@ist.tugraz.at)
+ */
+
+package at.tugraz.ist.ase.knowledgebases.app;
+
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
+import at.tugraz.ist.ase.knowledgebases.app.generator.FeatureModelGenerator;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelFormats;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsReader;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs KBStatistics over synthetic feature models of increasing size and checks that the wall-clock time of each phase
+ * and the peak heap usage of the run stay within a small margin of their baselines in {@code scale-baselines.csv}.
+ * <p>
+ * The baselines depend on the machine, record them on the reference machine with
+ * {@code mvn test -Pscale -Dscale.record=true}, which rewrites the row of each case instead of checking it.
+ * A case without a baseline is checked against the absolute budgets of the case instead.
+ * <p>
+ * Slow, so excluded from the default build; run with {@code mvn test -Pscale}.
+ */
+@Tag("scale")
+class KBStatisticsScaleTest {
+
+    private static final Path BASELINES = Path.of("./src/test/resources/scale-baselines.csv");
+    private static final List<String> PHASES = List.of("parse", "build", "solve");
+    /**
+     * The wall-clock time of a phase may exceed its baseline by 50% plus 50 ms, so that short phases don't fail on noise.
+     */
+    private static final double WALL_MARGIN = 1.5;
+    private static final long WALL_SLACK_MILLIS = 50;
+    /**
+     * The peak heap usage may exceed its baseline by 20%.
+     */
+    private static final double HEAP_MARGIN = 1.2;
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    String programTitle = "KBStatisticsScaleTest";
+    String usage = "Usage: java -jar KBStatisticsScaleTest.jar [options]";
+
+    @ParameterizedTest
+    @CsvSource({
+            // features, format, budgets without a baseline: max wall time per phase (ms), max peak heap (MB)
+            "1000,   SXFM,         5000,   256",
+            "1000,   FEATUREIDE,   5000,   256",
+            "1000,   GLENCOE,      5000,   256",
+            "1000,   DESCRIPTIVE,  5000,   256",
+            "10000,  SXFM,        20000,  1024",
+            "10000,  FEATUREIDE,  20000,  1024",
+            "50000,  SXFM,        60000,  4096"
+    })
+    void shouldStayWithinBaselines(int numFeatures, FMFormat format, long maxWallMillis, long maxHeapMB,
+                                   @TempDir Path tempDir) throws Exception {
+        FeatureModelGenerator generator = FeatureModelGenerator.builder()
+                .numFeatures(numFeatures)
+                .maxDepth(8)
+                .build();
+        Path file = generator.write(tempDir.resolve("synthetic_" + numFeatures + "." + FeatureModelFormats.extensionOf(format)), format);
+        Path out = tempDir.resolve("scale.jsonl");
+
+        String[] args = new String[]{"-fm", file.toString(), "-out", out.toString(), "-format", "jsonl", "-no-cache", "-timings"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        long peakHeapBytes = peakHeapUsage(() -> new KBStatistics(options).calculate());
+
+        List<Map<String, Object>> records = JsonLinesStatisticsReader.read(out);
+        assertEquals(1, records.size());
+        Map<String, Object> record = records.get(0);
+        assertNull(record.get("error"));
+        assertEquals(numFeatures, ((Number) record.get("features")).intValue());
+
+        Map<String, Long> measured = new LinkedHashMap<>();
+        for (String phase : PHASES) {
+            measured.put(phase + "_ms", ((Number) record.get(phase + "_wall_ms")).longValue());
+        }
+        measured.put("peak_heap_mb", peakHeapBytes >> 20);
+
+        String key = numFeatures + "," + format;
+        if (Boolean.getBoolean("scale.record")) {
+            recordBaseline(key, measured);
+            return;
+        }
+
+        Map<String, Long> baseline = readBaselines().get(key);
+        if (baseline == null) {
+            System.out.println("No baseline of " + key + ", checking the absolute budgets, record one with -Dscale.record=true");
+        }
+        for (String phase : PHASES) {
+            long wallMillis = measured.get(phase + "_ms");
+            long limit = baseline != null ? (long) (baseline.get(phase + "_ms") * WALL_MARGIN) + WALL_SLACK_MILLIS : maxWallMillis;
+            assertTrue(wallMillis <= limit, phase + " of " + key + " took " + wallMillis + " ms, limit " + limit + " ms"
+                    + (baseline != null ? ", baseline " + baseline.get(phase + "_ms") + " ms" : ""));
+        }
+        long heapLimit = baseline != null ? (long) Math.ceil(baseline.get("peak_heap_mb") * HEAP_MARGIN) : maxHeapMB;
+        assertTrue(measured.get("peak_heap_mb") <= heapLimit, key + " used a peak heap of " + measured.get("peak_heap_mb")
+                + " MB, limit " + heapLimit + " MB" + (baseline != null ? ", baseline " + baseline.get("peak_heap_mb") + " MB" : ""));
+    }
+
+    /**
+     * Runs the given action and returns the growth of the heap during it: the sum of the peak usages of the heap pools,
+     * reset after a GC, minus the heap used after that GC.
+     */
+    private static long peakHeapUsage(Action action) throws Exception {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+
+        System.gc();
+        long retained = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        action.run();
+
+        long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return Math.max(0, peak - retained);
+    }
+
+    /**
+     * Reads the baselines by "features,format", skipping comments.
+     */
+    private static Map<String, Map<String, Long>> readBaselines() throws IOException {
+        Map<String, Map<String, Long>> baselines = new LinkedHashMap<>();
+        if (!Files.exists(BASELINES)) {
+            return baselines;
+        }
+        String[] columns = null;
+        for (String line : Files.readAllLines(BASELINES)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (columns == null) {
+                columns = fields;
+                continue;
+            }
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (int i = 2; i < columns.length; i++) {
+                values.put(columns[i], Long.parseLong(fields[i]));
+            }
+            baselines.put(fields[0] + "," + fields[1], values);
+        }
+        return baselines;
+    }
+
+    /**
+     * Replaces the baseline of the given case, keeping the comments and the other cases.
+     */
+    private static void recordBaseline(String key, Map<String, Long> measured) throws IOException {
+        List<String> comments = new ArrayList<>();
+        if (Files.exists(BASELINES)) {
+            Files.readAllLines(BASELINES).stream().filter(line -> line.startsWith("#")).forEach(comments::add);
+        }
+        Map<String, Map<String, Long>> baselines = readBaselines();
+        baselines.put(key, measured);
+
+        List<String> lines = new ArrayList<>(comments);
+        lines.add("features,format," + String.join(",", measured.keySet()));
+        baselines.forEach((k, values) -> lines.add(k + "," + values.values().stream().map(String::valueOf)
+                .collect(Collectors.joining(","))));
+        Files.write(BASELINES, lines);
+    }
+}
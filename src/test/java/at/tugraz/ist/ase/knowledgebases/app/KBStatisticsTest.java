@@ -8,12 +8,53 @@
 
 package at.tugraz.ist.ase.knowledgebases.app;
 
+import at.tugraz.ist.ase.fm.core.FeatureModel;
+import at.tugraz.ist.ase.fm.parser.FMFormat;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParser;
+import at.tugraz.ist.ase.fm.parser.FeatureModelParserException;
+import at.tugraz.ist.ase.fm.parser.factory.FMParserFactory;
 import at.tugraz.ist.ase.knowledgebases.app.cli.KBStatistics_CmdLineOptions;
+import at.tugraz.ist.ase.knowledgebases.app.compare.CorpusComparison;
+import at.tugraz.ist.ase.knowledgebases.app.generator.FeatureModelGenerator;
+import at.tugraz.ist.ase.knowledgebases.app.io.ArchiveReader;
+import at.tugraz.ist.ase.knowledgebases.app.io.CheckpointJournal;
+import at.tugraz.ist.ase.knowledgebases.app.io.CsvStatisticsWriter;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelFormats;
+import at.tugraz.ist.ase.knowledgebases.app.io.FeatureModelWalker;
+import at.tugraz.ist.ase.knowledgebases.app.io.JsonLinesStatisticsReader;
+import at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseProvider;
+import at.tugraz.ist.ase.knowledgebases.app.kb.KnowledgeBaseRegistry;
+import at.tugraz.ist.ase.knowledgebases.app.sample.Sample;
+import at.tugraz.ist.ase.knowledgebases.app.server.StatisticsServer;
+import at.tugraz.ist.ase.knowledgebases.app.shard.ShardMerger;
+import at.tugraz.ist.ase.knowledgebases.app.store.StatisticsQuery;
+import at.tugraz.ist.ase.knowledgebases.app.store.StatisticsStore;
+import at.tugraz.ist.ase.knowledgebases.core.KB;
+import at.tugraz.ist.ase.knowledgebases.fm.FMKB;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -478,4 +519,933 @@ class KBStatisticsTest {
 //                        #Choco constraints: 1694394
 //        Consistency: true
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldHaveSameOutputWithThreads() {
+        String[] seqArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", "testSequential.txt"};
+        String[] parArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", "testParallel.txt", "-t", "4"};
+
+        KBStatistics_CmdLineOptions seqOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        seqOptions.parseArgument(seqArgs);
+        KBStatistics_CmdLineOptions parOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        parOptions.parseArgument(parArgs);
+
+        assertDoesNotThrow(new KBStatistics(seqOptions)::calculate);
+        assertDoesNotThrow(new KBStatistics(parOptions)::calculate);
+
+        AtomicReference<String> sequential = new AtomicReference<>("");
+        AtomicReference<String> parallel = new AtomicReference<>("");
+        assertDoesNotThrow(() -> sequential.set(String.join("\n", Files.readAllLines(new File("testSequential.txt").toPath()))));
+        assertDoesNotThrow(() -> parallel.set(String.join("\n", Files.readAllLines(new File("testParallel.txt").toPath()))));
+
+        assertFalse(sequential.get().isEmpty());
+        assertEquals(sequential.get(), parallel.get());
+    }
+
+    @Test
+    void shouldHaveSameOutputLargestFirst(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        Path seqFile = tempDir.resolve("sequential.jsonl");
+        Path largestFirstFile = tempDir.resolve("largestFirst.jsonl");
+        String[] seqArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", seqFile.toString(),
+                "-format", "jsonl", "-no-cache"};
+        String[] largestFirstArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", largestFirstFile.toString(),
+                "-format", "jsonl", "-t", "4", "-largest-first", "-cache-dir", tempDir.resolve("cache").toString()};
+
+        KBStatistics_CmdLineOptions seqOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        seqOptions.parseArgument(seqArgs);
+        new KBStatistics(seqOptions).calculate();
+
+        // the second run takes the costs from the history of the first one
+        for (int i = 0; i < 2; i++) {
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(largestFirstArgs);
+            KBStatistics kbStatistics = new KBStatistics(options);
+            kbStatistics.calculate();
+
+            assertEquals(i == 0 ? 0 : Files.readAllLines(seqFile).size(), kbStatistics.costs.getNumKnown());
+            assertEquals(Files.readAllLines(seqFile), Files.readAllLines(largestFirstFile));
+        }
+        assertEquals(Files.readAllLines(seqFile).size(),
+                Files.readAllLines(tempDir.resolve("cache").resolve(KBStatistics.COST_HISTORY_FILE)).size());
+    }
+
+    @Test
+    void shouldNotSaveCostHistoryWithoutCache(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", tempDir.resolve("out.jsonl").toString(),
+                "-format", "jsonl", "-no-cache", "-t", "4", "-largest-first", "-cache-dir", tempDir.resolve("cache").toString()};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+        KBStatistics kbStatistics = new KBStatistics(options);
+        kbStatistics.calculate();
+
+        assertEquals(0, kbStatistics.costs.getNumKnown());
+        assertFalse(Files.exists(tempDir.resolve("cache")));
+    }
+
+    @Test
+    void shouldHaveSameOutputWithHeapBudget() throws IOException {
+        String[] seqArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", "testUnbounded.txt", "-no-cache"};
+        // a budget of 1 MB admits a few small models at once, and the larger ones alone
+        String[] budgetArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", "testHeapBudget.txt", "-no-cache",
+                "-t", "4", "-heap-budget", "1"};
+
+        KBStatistics_CmdLineOptions seqOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        seqOptions.parseArgument(seqArgs);
+        KBStatistics_CmdLineOptions budgetOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        budgetOptions.parseArgument(budgetArgs);
+
+        assertDoesNotThrow(new KBStatistics(seqOptions)::calculate);
+        KBStatistics bounded = new KBStatistics(budgetOptions);
+        assertDoesNotThrow(bounded::calculate);
+
+        assertEquals(Files.readAllLines(Path.of("testUnbounded.txt")), Files.readAllLines(Path.of("testHeapBudget.txt")));
+        assertEquals(bounded.budget.getBudgetBytes(), bounded.budget.getAvailableBytes());
+    }
+
+    @Test
+    void shouldWalkSubdirectoriesAndSkipOtherFiles(@TempDir Path tempDir) throws IOException {
+        Path subDir = Files.createDirectories(tempDir.resolve("sub"));
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), subDir.resolve("smartwatch.sxfm"));
+        Files.writeString(tempDir.resolve("notes.txt"), "not a feature model");
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testWalk.txt"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testWalk.txt"));
+        assertEquals("1", lines.get(0));
+        assertEquals("Name: smartwatch.sxfm", lines.get(1));
+        assertFalse(lines.contains("2"));
+    }
+
+    @Test
+    void shouldSniffFormatOfMisnamedFM(@TempDir Path tempDir) throws IOException {
+        // a SPLOT model with the extension of FeatureIDE models
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), tempDir.resolve("smartwatch.xml"));
+
+        String[] args = new String[]{"-fm", tempDir.resolve("smartwatch.xml").toString(), "-out", "testSniff.txt", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testSniff.txt"));
+        assertEquals("Name: smartwatch.xml", lines.get(1));
+        assertEquals("Source: SPLOT", lines.get(2));
+        assertTrue(lines.contains("Consistency: true"));
+        assertTrue(lines.contains("#features: 12"));
+    }
+
+    @Test
+    void shouldSniffFMsWithoutExtension(@TempDir Path tempDir) throws IOException {
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), tempDir.resolve("smartwatch"));
+        Files.writeString(tempDir.resolve("README"), "not a feature model");
+        Files.writeString(tempDir.resolve("statistics.jsonl"), "{\"counter\":1,\"features\":12}\n");
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testSniffDir.txt"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testSniffDir.txt"));
+        assertEquals("Name: smartwatch", lines.get(1));
+        assertEquals("Source: SPLOT", lines.get(2));
+        assertFalse(lines.contains("2"));
+    }
+
+    @Test
+    void shouldReadLongPathsFromTar(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        byte[] fm = Files.readAllBytes(Path.of("./src/test/resources/smartwatch.sxfm"));
+        String longPath = "models/" + "long".repeat(30) + "/smartwatch.sxfm";
+        Path archive = tempDir.resolve("fms.tgz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            // a POSIX header with a prefix
+            writeTarEntry(out, "smartwatch.sxfm", "corpus", "ustar\0" + "00", '0', fm);
+            // a GNU header, whose prefix field holds other data
+            writeTarEntry(out, "gnu/smartwatch.sxfm", "12345670123", "ustar  \0", '0', fm);
+            // GNU and PAX long paths
+            writeTarEntry(out, "././@LongLink", "", "ustar  \0", 'L', (longPath + "\0").getBytes(StandardCharsets.UTF_8));
+            writeTarEntry(out, longPath.substring(0, 99), "", "ustar  \0", '0', fm);
+            writeTarEntry(out, "PaxHeaders/x", "", "ustar\0" + "00", 'x', paxRecord("path", "pax/" + longPath));
+            writeTarEntry(out, "pax/smartwatch.sxfm", "", "ustar\0" + "00", '0', fm);
+            // only the entry with the content of a feature model is visited
+            writeTarEntry(out, "models/smartwatch", "", "ustar\0" + "00", '0', fm);
+            writeTarEntry(out, "models/README", "", "ustar\0" + "00", '0', "not a feature model".getBytes(StandardCharsets.UTF_8));
+            out.write(new byte[1024]);
+        }
+
+        List<String> entries = new ArrayList<>();
+        ArchiveReader.read(archive, source -> {
+            assertArrayEquals(fm, source.read());
+            entries.add(source.getPath().substring(source.getPath().indexOf("!/") + 2));
+        });
+
+        assertEquals(List.of("corpus/smartwatch.sxfm", "gnu/smartwatch.sxfm", longPath, "pax/" + longPath, "models/smartwatch"),
+                entries);
+    }
+
+    private static void writeTarEntry(OutputStream out, String name, String prefix, String magic, char type, byte[] content)
+            throws IOException {
+        byte[] header = new byte[512];
+        putTarField(header, 0, name);
+        putTarField(header, 124, String.format("%011o", content.length));
+        header[156] = (byte) type;
+        putTarField(header, 257, magic);
+        putTarField(header, 345, prefix);
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void putTarField(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static byte[] paxRecord(String key, String value) {
+        String record = " " + key + "=" + value + "\n";
+        int length = record.length();
+        while (String.valueOf(length).length() + record.length() != length) {
+            length = String.valueOf(length).length() + record.length();
+        }
+        return (length + record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void shouldReadFMsFromArchive(@TempDir Path tempDir) throws IOException {
+        Path archive = tempDir.resolve("fms.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive));
+             DirectoryStream<Path> fms = Files.newDirectoryStream(Path.of("./src/test/resources/fms"))) {
+            for (Path fm : fms) {
+                zip.putNextEntry(new ZipEntry("models/" + fm.getFileName()));
+                Files.copy(fm, zip);
+                zip.closeEntry();
+            }
+        }
+
+        String[] args = new String[]{"-fm", archive.toString(), "-out", "testArchive.csv", "-format", "csv", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testArchive.csv"));
+        assertEquals(8, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",smartwatch.sxfm,SPLOT,12,10,28,23,consistent,")));
+        assertEquals(7, kbStatistics.numSucceeded);
+    }
+
+    @Test
+    void shouldSkipArchivesLargestFirst(@TempDir Path tempDir) throws IOException {
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), tempDir.resolve("smartwatch.sxfm"));
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tempDir.resolve("fms.zip")))) {
+            zip.putNextEntry(new ZipEntry("bamboobike.fm4conf"));
+            Files.copy(Path.of("./src/test/resources/fms/bamboobike.fm4conf"), zip);
+            zip.closeEntry();
+        }
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testArchiveLargestFirst.csv", "-format", "csv",
+                "-no-cache", "-t", "2", "-largest-first"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        assertEquals(1, kbStatistics.numSucceeded);
+        assertEquals(0, kbStatistics.numFailed);
+        assertEquals(2, Files.readAllLines(Path.of("testArchiveLargestFirst.csv")).size());
+    }
+
+    @Test
+    void shouldCompareCorpora(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        Path oldDir = Files.createDirectories(tempDir.resolve("old"));
+        Path newDir = Files.createDirectories(tempDir.resolve("new"));
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), oldDir.resolve("smartwatch.sxfm"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike.fm4conf"), oldDir.resolve("bamboobike.fm4conf"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike.fm4conf"), newDir.resolve("bamboobike.fm4conf"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike_splot.sxfm"), newDir.resolve("bamboobike_splot.sxfm"));
+        // the new smartwatch has one cross-tree constraint less
+        Files.writeString(newDir.resolve("smartwatch.sxfm"), Files.readString(Path.of("./src/test/resources/smartwatch.sxfm"))
+                .replace("constraint_4:~_r_2_9_10 or _r_1_5_7 or _r_1_5_8\n", ""));
+
+        String[] args = new String[]{"-compare", oldDir.toString(), newDir.toString(), "-out", "testCompare.txt",
+                "-no-cache", "-regression-threshold", "1000000"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        CorpusComparison comparison = new CorpusComparison(options);
+        comparison.compare();
+
+        List<String> lines = Files.readAllLines(Path.of("testCompare.txt"));
+        assertEquals(1, comparison.getNumReused());
+        assertTrue(lines.contains("bamboobike_splot.sxfm: added"));
+        assertTrue(lines.contains("smartwatch.sxfm: cross_tree_constraints 4 -> 3 (-1)"));
+        assertTrue(lines.stream().noneMatch(line -> line.startsWith("bamboobike.fm4conf")));
+
+        // the old corpus as the output of an earlier run
+        String[] oldArgs = new String[]{"-fm-dir", oldDir.toString(), "-out", tempDir.resolve("old.jsonl").toString(),
+                "-format", "jsonl", "-no-cache"};
+        KBStatistics_CmdLineOptions oldOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        oldOptions.parseArgument(oldArgs);
+        new KBStatistics(oldOptions).calculate();
+
+        String[] jsonArgs = new String[]{"-compare", tempDir.resolve("old.jsonl").toString(), newDir.toString(),
+                "-out", "testCompareJsonl.txt", "-no-cache", "-regression-threshold", "1000000"};
+        KBStatistics_CmdLineOptions jsonOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        jsonOptions.parseArgument(jsonArgs);
+
+        new CorpusComparison(jsonOptions).compare();
+
+        assertEquals(lines, Files.readAllLines(Path.of("testCompareJsonl.txt")));
+    }
+
+    @Test
+    void shouldCompareCorporaWithDifferentNesting(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        // all models of the old corpus are in one subdirectory, those of the new one aren't
+        Path oldDir = Files.createDirectories(tempDir.resolve("old").resolve("v1"));
+        Path newDir = Files.createDirectories(tempDir.resolve("new").resolve("v1"));
+        Files.createDirectories(tempDir.resolve("new").resolve("v2"));
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), oldDir.resolve("smartwatch.sxfm"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike.fm4conf"), oldDir.resolve("bamboobike.fm4conf"));
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), newDir.resolve("smartwatch.sxfm"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike.fm4conf"), newDir.resolve("bamboobike.fm4conf"));
+        Files.copy(Path.of("./src/test/resources/fms/bamboobike_splot.sxfm"), tempDir.resolve("new").resolve("v2").resolve("bamboobike_splot.sxfm"));
+
+        Path outFile = tempDir.resolve("compare.txt");
+        String[] args = new String[]{"-compare", tempDir.resolve("old").toString(), tempDir.resolve("new").toString(),
+                "-out", outFile.toString(), "-no-cache", "-regression-threshold", "1000000"};
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        CorpusComparison comparison = new CorpusComparison(options);
+        comparison.compare();
+
+        assertEquals(2, comparison.getNumReused());
+        assertEquals(List.of("v2/bamboobike_splot.sxfm: added"), Files.readAllLines(outFile));
+    }
+
+    @Test
+    void shouldMergeShards(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        String[] allArgs = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", tempDir.resolve("all.jsonl").toString(),
+                "-format", "jsonl", "-no-cache"};
+        KBStatistics_CmdLineOptions allOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        allOptions.parseArgument(allArgs);
+        new KBStatistics(allOptions).calculate();
+
+        int numRecords = 0;
+        List<Path> shards = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Path shard = tempDir.resolve("shard" + i + ".jsonl");
+            String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", shard.toString(),
+                    "-format", "jsonl", "-no-cache", "-shard", i + "/3"};
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(args);
+            new KBStatistics(options).calculate();
+
+            numRecords += Files.readAllLines(shard).size();
+            shards.add(shard);
+        }
+        assertEquals(Files.readAllLines(tempDir.resolve("all.jsonl")).size(), numRecords);
+
+        ShardMerger merger = new ShardMerger(shards);
+        assertEquals(numRecords, merger.merge(tempDir.resolve("merged.jsonl")));
+        assertEquals(numRecords, merger.getNumSucceeded());
+        assertEquals(Files.readAllLines(tempDir.resolve("all.jsonl")), Files.readAllLines(tempDir.resolve("merged.jsonl")));
+
+        // the same shard twice isn't a run
+        Path nonEmpty = shards.stream().filter(shard -> shard.toFile().length() > 0).findFirst().orElseThrow();
+        assertThrows(IOException.class, () -> new ShardMerger(List.of(nonEmpty, nonEmpty))
+                .merge(tempDir.resolve("overlap.jsonl")));
+    }
+
+    @Test
+    void shouldQueryStore(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        Path storeFile = tempDir.resolve("statistics.store");
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", tempDir.resolve("statistics.jsonl").toString(),
+                "-format", "jsonl", "-store", storeFile.toString(), "-no-cache"};
+        // the second run replaces the records of the first one
+        for (int i = 0; i < 2; i++) {
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(args);
+            new KBStatistics(options).calculate();
+        }
+        List<String> records = Files.readAllLines(tempDir.resolve("statistics.jsonl"));
+        try (StatisticsStore store = StatisticsStore.open(storeFile)) {
+            assertEquals(records.size(), store.size());
+        }
+
+        Path result = tempDir.resolve("result.csv");
+        String[] queryArgs = new String[]{"-query", storeFile.toString(), "-where", "consistency=consistent,features>5",
+                "-select", "name,features", "-format", "csv", "-out", result.toString()};
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(queryArgs);
+        int numMatches = KBStatistics.query(options);
+
+        long expected = records.stream()
+                .filter(record -> record.contains("\"consistency\":\"consistent\""))
+                .filter(record -> Integer.parseInt(record.replaceAll(".*\"features\":(\\d+).*", "$1")) > 5)
+                .count();
+        assertEquals(expected, numMatches);
+        List<String> lines = Files.readAllLines(result);
+        assertEquals("name,features", lines.get(0));
+        assertEquals(numMatches + 1, lines.size());
+
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsQuery("size>5", null));
+    }
+
+    @Test
+    void shouldQueryStoreWithoutModifyingIt(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        Path storeFile = tempDir.resolve("statistics.store");
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", tempDir.resolve("statistics.jsonl").toString(),
+                "-format", "jsonl", "-store", storeFile.toString()};
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+        new KBStatistics(options).calculate();
+
+        // a stale index and a record being appended by another run
+        Files.delete(StatisticsStore.indexOf(storeFile));
+        Files.write(storeFile, new byte[]{0, 0, 1, 0, 3}, StandardOpenOption.APPEND);
+        byte[] expected = Files.readAllBytes(storeFile);
+
+        String[] queryArgs = new String[]{"-query", storeFile.toString(), "-select", "name", "-format", "csv",
+                "-out", tempDir.resolve("result.csv").toString()};
+        KBStatistics_CmdLineOptions queryOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        queryOptions.parseArgument(queryArgs);
+
+        assertEquals(Files.readAllLines(tempDir.resolve("statistics.jsonl")).size(), KBStatistics.query(queryOptions));
+        assertArrayEquals(expected, Files.readAllBytes(storeFile));
+        assertFalse(Files.exists(StatisticsStore.indexOf(storeFile)));
+    }
+
+    @Test
+    void shouldSampleFeatureModels(@TempDir Path tempDir) throws IOException, FeatureModelParserException {
+        List<List<String>> samples = new ArrayList<>();
+        for (String sample : new String[]{"3", "3", "100%"}) {
+            Path outFile = tempDir.resolve("sample.jsonl");
+            String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", outFile.toString(),
+                    "-format", "jsonl", "-no-cache", "-sample", sample, "-sample-seed", "5"};
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(args);
+            KBStatistics kbStatistics = new KBStatistics(options);
+            kbStatistics.calculate();
+
+            samples.add(Files.readAllLines(outFile));
+            assertEquals(samples.get(samples.size() - 1).size(), kbStatistics.estimator.getNumSampled());
+        }
+
+        // the same seed draws the same models, the whole corpus is a sample as well
+        assertEquals(3, samples.get(0).size());
+        assertEquals(samples.get(0), samples.get(1));
+        try (Stream<Path> fms = Files.list(Path.of("./src/test/resources/fms"))) {
+            assertEquals(fms.filter(FeatureModelWalker::isFeatureModel).count(), samples.get(2).size());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> Sample.parse("0", 1));
+        assertThrows(IllegalArgumentException.class, () -> Sample.parse("150%", 1));
+    }
+
+    /**
+     * A knowledge base of a plugin, registered in the test resources.
+     */
+    public static class SmartwatchProvider implements KnowledgeBaseProvider {
+        @Override
+        public String getName() {
+            return "Smartwatch";
+        }
+
+        @Override
+        public KB create() {
+            try {
+                FeatureModelParser parser = FMParserFactory.getInstance().getParser(FMFormat.SXFM);
+                return new FMKB(parser.parse(new File("./src/test/resources/smartwatch.sxfm")), false);
+            } catch (FeatureModelParserException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test
+    void shouldCalculateStatisticsOfRegisteredKBs() throws IOException {
+        KnowledgeBaseRegistry registry = KnowledgeBaseRegistry.getDefault();
+        assertEquals(List.of("PC", "Renault", "Smartwatch"),
+                registry.getProviders().stream().map(KnowledgeBaseProvider::getName).toList());
+        assertTrue(registry.toListing().startsWith("PC "));
+
+        String[] args = new String[]{"-kb", "smartwatch", "-out", "testRegistry.txt", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testRegistry.txt"));
+        assertEquals("Name: smartwatch.sxfm", lines.get(1));
+        assertTrue(lines.contains("Consistency: true"));
+    }
+
+    @Test
+    void shouldNotCacheWithoutCacheDir() throws IOException {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testNoCacheDir.txt"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        assertNull(kbStatistics.calculator.getCache());
+    }
+
+    @Test
+    void shouldNotHitCacheWithOtherLimits(@TempDir Path cacheDir) throws IOException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", "testCacheLimits.txt", "-cache-dir", cacheDir.toString()};
+        String[] limitedArgs = Arrays.copyOf(args, args.length + 2);
+        limitedArgs[args.length] = "-node-limit";
+        limitedArgs[args.length + 1] = "1000000";
+
+        for (String[] runArgs : List.of(args, limitedArgs)) {
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(runArgs);
+
+            KBStatistics kbStatistics = new KBStatistics(options);
+            assertDoesNotThrow(kbStatistics::calculate);
+
+            assertEquals(0, kbStatistics.calculator.getCache().getHits());
+        }
+    }
+
+    @Test
+    void shouldHitCacheForUnchangedFMs(@TempDir Path cacheDir) throws IOException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", "testCache.txt", "-cache-dir", cacheDir.toString()};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics first = new KBStatistics(options);
+        assertDoesNotThrow(first::calculate);
+        String expected = Files.readString(Path.of("testCache.txt"));
+
+        assertEquals(0, first.calculator.getCache().getHits());
+        assertEquals(7, first.calculator.getCache().getMisses());
+
+        KBStatistics second = new KBStatistics(options);
+        assertDoesNotThrow(second::calculate);
+
+        assertEquals(7, second.calculator.getCache().getHits());
+        assertEquals(0, second.calculator.getCache().getMisses());
+        assertEquals(expected, Files.readString(Path.of("testCache.txt")));
+    }
+
+    @Test
+    void shouldHaveTimings() throws IOException {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testTimings.txt", "-no-cache", "-timings"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        String content = Files.readString(Path.of("testTimings.txt"));
+        assertTrue(content.contains("Parse wall time (ms): "));
+        assertTrue(content.contains("KB build CPU time (ms): "));
+        assertTrue(content.contains("Solve allocated bytes: "));
+    }
+
+    @Test
+    void shouldHaveSolverMeasures() throws IOException {
+        String[] args = new String[]{"-kb", "PC", "-out", "testSolverStats.txt", "-time-limit", "60000", "-solver-stats"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testSolverStats.txt"));
+        assertTrue(lines.contains("Consistency: true"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("#nodes: ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("#backtracks: ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("#fails: ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("Solve time (s): ")));
+    }
+
+    @Test
+    void shouldHaveCSVOutput() throws IOException {
+        String[] args = new String[]{"-kb", "PC", "-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testPC.csv", "-format", "csv"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testPC.csv"));
+        assertEquals(3, lines.size());
+        assertEquals(CsvStatisticsWriter.header(), lines.get(0));
+        assertTrue(lines.get(1).startsWith("1,PCConfigurationProblem,https://www.itu.dk/research/cla/externals/clib/,45,36,1158,644,consistent,"));
+        assertTrue(lines.get(2).startsWith("2,smartwatch.sxfm,SPLOT,12,10,28,23,consistent,,,,,0.4,12,6,4,2,2,1,1,2,1,"));
+    }
+
+    @Test
+    void shouldHaveJSONLinesOutput() throws IOException {
+        String[] args = new String[]{"-kb", "PC", "-out", "testPC.jsonl", "-format", "jsonl"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testPC.jsonl"));
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"counter\":1,\"name\":\"PCConfigurationProblem\","));
+        assertTrue(lines.get(0).contains("\"consistency\":\"consistent\""));
+        assertTrue(lines.get(0).contains("\"features\":null"));
+    }
+
+    @Test
+    void testStructuralStatisticsOnly() {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testStructural.txt", "-stats", "structural"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        AtomicReference<String> content = new AtomicReference<>("");
+        assertDoesNotThrow(() -> content.set(String.join("\n", Files.readAllLines(Path.of("testStructural.txt")))));
+
+        String expected = """
+                    1
+                    Name: smartwatch.sxfm
+                    
+                    CTC ratio: 0.4
+                    #features: 12
+                    #relationships: 6
+                    #constraints: 4
+                    #MANDATORY: 2
+                    #OPTIONAL: 2
+                    #ALTERNATIVE: 1
+                    #OR: 1
+                    #REQUIRES: 2
+                    #EXCLUDES: 1""";
+        assertEquals(expected, content.get());
+    }
+
+    @Test
+    void shouldHaveFMMetrics() throws IOException {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testFMMetrics.txt", "-no-cache", "-fm-metrics"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testFMMetrics.txt"));
+        assertTrue(lines.contains("Tree depth: 2"));
+        assertTrue(lines.contains("#leaves: 9"));
+        assertTrue(lines.contains("Max branching factor: 4"));
+        assertTrue(lines.contains("Branching factors: 3:1 4:2"));
+        assertTrue(lines.contains("Constraint density: " + 10 / 12.0));
+        assertTrue(lines.contains("Avg group size: 3.5"));
+        assertTrue(lines.contains("Max group size: 4"));
+    }
+
+    @Test
+    void shouldHaveSolutionSpaceStatistics() throws IOException {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testSolutionSpace.txt", "-no-cache",
+                "-stats", "consistency,solution-space"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testSolutionSpace.txt"));
+        assertTrue(lines.contains("#configurations: 75 (exact)"));
+        assertTrue(lines.contains("#core features: 3 (exact)"));
+        assertTrue(lines.contains("#dead features: 0 (exact)"));
+        assertTrue(lines.contains("#false-optional features: 0 (exact)"));
+    }
+
+    @Test
+    void shouldHaveChocoProfile() throws IOException {
+        String[] args = new String[]{"-fm", "./src/test/resources/smartwatch.sxfm", "-out", "testChocoProfile.txt", "-no-cache",
+                "-stats", "structural,choco,choco-profile"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        List<String> lines = Files.readAllLines(Path.of("testChocoProfile.txt"));
+        List<String> profile = lines.stream().filter(line -> line.startsWith("Choco profile of ")).toList();
+        assertTrue(profile.stream().anyMatch(line -> line.startsWith("Choco profile of MANDATORY: ")));
+        assertTrue(profile.stream().anyMatch(line -> line.startsWith("Choco profile of ALTERNATIVE: ")));
+
+        // every Choco variable and constraint is attributed to exactly one entry
+        int numChocoVars = profile.stream().mapToInt(line -> count(line, " Choco variables")).sum();
+        int numChocoConstraints = profile.stream().mapToInt(line -> count(line, " Choco constraints")).sum();
+        assertTrue(lines.contains("#Choco variables: " + numChocoVars));
+        assertTrue(lines.contains("#Choco constraints: " + numChocoConstraints));
+    }
+
+    /**
+     * Returns the number before the given label in a line of the Choco profile.
+     */
+    private static int count(String line, String label) {
+        String before = line.substring(0, line.indexOf(label));
+        return Integer.parseInt(before.substring(before.lastIndexOf(' ') + 1));
+    }
+
+    @Test
+    void shouldExportMetrics() throws IOException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", "testMetrics.txt", "-no-cache",
+                "-metrics-file", "testMetrics.prom"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        assertEquals(7, kbStatistics.metrics.getProcessed());
+        assertEquals(0, kbStatistics.metrics.getQueueDepth());
+
+        List<String> lines = Files.readAllLines(Path.of("testMetrics.prom"));
+        assertTrue(lines.contains("kbstatistics_discovered_total 7"));
+        assertTrue(lines.contains("kbstatistics_processed_total 7"));
+        assertTrue(lines.contains("kbstatistics_failed_total 0"));
+        assertTrue(lines.contains("kbstatistics_phase_duration_seconds_count{phase=\"parse\"} 7"));
+        assertTrue(lines.contains("kbstatistics_phase_duration_seconds_bucket{phase=\"write\",le=\"+Inf\"} 7"));
+    }
+
+    @Test
+    void shouldKeepGoingAfterBadFiles(@TempDir Path tempDir) throws IOException {
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), tempDir.resolve("smartwatch.sxfm"));
+        Files.writeString(tempDir.resolve("broken.sxfm"), "this is not a feature model");
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testKeepGoing.txt", "-no-cache", "-keep-going"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        assertEquals(1, kbStatistics.numSucceeded);
+        assertEquals(1, kbStatistics.numFailed);
+
+        List<String> lines = Files.readAllLines(Path.of("testKeepGoing.txt"));
+        assertTrue(lines.contains("Name: smartwatch.sxfm"));
+        assertTrue(lines.contains("Name: broken.sxfm"));
+        assertTrue(lines.contains("Error phase: Parse"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("Error: ")));
+    }
+
+    @Test
+    void shouldRecordUnreadableDirectoriesAsFailures(@TempDir Path tempDir) throws IOException {
+        Files.copy(Path.of("./src/test/resources/smartwatch.sxfm"), tempDir.resolve("smartwatch.sxfm"));
+        // a link to its own parent directory can't be walked
+        Files.createSymbolicLink(tempDir.resolve("loop"), tempDir);
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testUnreadable.txt", "-no-cache", "-keep-going"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        KBStatistics kbStatistics = new KBStatistics(options);
+        assertDoesNotThrow(kbStatistics::calculate);
+
+        assertEquals(1, kbStatistics.numSucceeded);
+        assertEquals(1, kbStatistics.numFailed);
+
+        List<String> lines = Files.readAllLines(Path.of("testUnreadable.txt"));
+        assertTrue(lines.contains("Name: loop"));
+        assertTrue(lines.contains("Error phase: Parse"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("Error: ") && line.contains("FileSystemLoopException")));
+    }
+
+    @Test
+    void shouldFailWithoutKeepGoing(@TempDir Path tempDir) throws IOException {
+        Files.writeString(tempDir.resolve("broken.sxfm"), "this is not a feature model");
+
+        String[] args = new String[]{"-fm-dir", tempDir.toString(), "-out", "testFail.txt", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertThrows(Exception.class, new KBStatistics(options)::calculate);
+    }
+
+    @Test
+    void shouldResumeInterruptedRun() throws IOException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-kb", "PC", "-out", "testResume.txt", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        Path outFile = Path.of("testResume.txt");
+        Path journal = Path.of("testResume.txt.journal");
+        byte[] expected = Files.readAllBytes(outFile);
+        List<String> journalLines = Files.readAllLines(journal);
+        assertEquals(8, journalLines.size());
+
+        // simulate a crash while writing the third record
+        int offset = Integer.parseInt(journalLines.get(1).split("\t")[1]);
+        byte[] partial = Arrays.copyOf(expected, offset + 10);
+        Files.write(outFile, partial);
+        Files.write(journal, journalLines.subList(0, 2));
+
+        String[] resumeArgs = Arrays.copyOf(args, args.length + 1);
+        resumeArgs[args.length] = "-resume";
+        KBStatistics_CmdLineOptions resumeOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        resumeOptions.parseArgument(resumeArgs);
+
+        KBStatistics resumed = new KBStatistics(resumeOptions);
+        assertDoesNotThrow(resumed::calculate);
+
+        // the summary counts the records of the interrupted run as well
+        assertEquals(8, resumed.numSucceeded);
+        assertEquals(0, resumed.numFailed);
+        assertArrayEquals(expected, Files.readAllBytes(outFile));
+        assertEquals(8, Files.readAllLines(journal).size());
+    }
+
+    @Test
+    void shouldResumeFromJournalCutMidInput(@TempDir Path tempDir) throws IOException {
+        Path journalFile = tempDir.resolve("out.txt.journal");
+        try (CheckpointJournal journal = new CheckpointJournal(journalFile, false)) {
+            journal.record(1, "/data/models/a.sxfm", false, 100);
+            journal.record(2, "/data/models/b.sxfm", true, 200);
+            journal.record(3, "/data/models/c.sxfm", false, 300);
+        }
+        // a crash while the third line was written
+        String content = Files.readString(journalFile);
+        Files.writeString(journalFile, content.substring(0, content.indexOf("/data/mo", content.indexOf("3\t"))
+                + "/data/mo".length()));
+
+        try (CheckpointJournal journal = new CheckpointJournal(journalFile, true)) {
+            assertEquals(2, journal.getNumCompleted());
+            assertEquals(1, journal.getNumFailed());
+            assertEquals(200, journal.getOffset());
+            assertTrue(journal.isCompleted(2, "/data/models/b.sxfm"));
+            assertFalse(journal.isCompleted(3, "/data/models/c.sxfm"));
+
+            journal.record(3, "/data/models/c.sxfm", false, 300);
+        }
+
+        assertEquals(List.of("1\t100\tok\t/data/models/a.sxfm", "2\t200\tfailed\t/data/models/b.sxfm",
+                "3\t300\tok\t/data/models/c.sxfm"), Files.readAllLines(journalFile));
+    }
+
+    @Test
+    void shouldNotResumeWithChangedInputs() throws IOException {
+        String[] args = new String[]{"-fm-dir", "./src/test/resources/fms", "-out", "testResumeChanged.txt", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+        // the first record of the journal belongs to another input
+        Path journal = Path.of("testResumeChanged.txt.journal");
+        List<String> journalLines = new ArrayList<>(Files.readAllLines(journal));
+        String[] first = journalLines.get(0).split("\t", 4);
+        journalLines.set(0, String.join("\t", first[0], first[1], first[2], "./src/test/resources/fms/other.sxfm"));
+        Files.write(journal, journalLines);
+
+        String[] resumeArgs = Arrays.copyOf(args, args.length + 1);
+        resumeArgs[args.length] = "-resume";
+        KBStatistics_CmdLineOptions resumeOptions = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        resumeOptions.parseArgument(resumeArgs);
+
+        assertThrows(IllegalStateException.class, new KBStatistics(resumeOptions)::calculate);
+    }
+
+    @Test
+    void shouldServeStatistics() throws IOException, InterruptedException {
+        String[] args = new String[]{"-server-port", "0", "-warmup", "1", "-no-cache"};
+
+        KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+        options.parseArgument(args);
+
+        StatisticsServer server = new StatisticsServer(options);
+        server.warmUp(options.getWarmUp());
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort();
+
+            HttpResponse<String> health = client.send(HttpRequest.newBuilder(URI.create(base + "/health")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, health.statusCode());
+
+            HttpResponse<String> posted = client.send(HttpRequest.newBuilder(URI.create(base + "/statistics?name=smartwatch.sxfm&format=text"))
+                            .POST(HttpRequest.BodyPublishers.ofFile(Path.of("./src/test/resources/smartwatch.sxfm"))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, posted.statusCode());
+            assertTrue(posted.body().contains("Name: smartwatch.sxfm"));
+            assertTrue(posted.body().contains("Consistency: true"));
+
+            HttpResponse<String> broken = client.send(HttpRequest.newBuilder(URI.create(base + "/statistics?name=broken.sxfm"))
+                            .POST(HttpRequest.BodyPublishers.ofString("this is not a feature model")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(422, broken.statusCode());
+            assertTrue(broken.body().contains("\"error_phase\":\"parse\""));
+
+            HttpResponse<String> missing = client.send(HttpRequest.newBuilder(URI.create(base + "/statistics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, missing.statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void shouldGenerateTheSameFeatureModelInEachFormat(@TempDir Path tempDir) throws Exception {
+        FeatureModelGenerator generator = FeatureModelGenerator.builder()
+                .numFeatures(500)
+                .maxDepth(5)
+                .groupRatio(0.5)
+                .ctcRatio(0.3)
+                .seed(7)
+                .build();
+
+        FeatureModel fm = generator.toFeatureModel();
+        assertEquals(500, fm.getNumOfFeatures());
+
+        String expected = null;
+        for (FMFormat format : List.of(FMFormat.SXFM, FMFormat.FEATUREIDE, FMFormat.GLENCOE, FMFormat.DESCRIPTIVE)) {
+            Path file = generator.write(tempDir.resolve("synthetic." + FeatureModelFormats.extensionOf(format)), format);
+            Path out = tempDir.resolve("synthetic_" + format + ".jsonl");
+
+            String[] args = new String[]{"-fm", file.toString(), "-out", out.toString(), "-format", "jsonl", "-no-cache"};
+
+            KBStatistics_CmdLineOptions options = new KBStatistics_CmdLineOptions(null, programTitle, null, usage);
+            options.parseArgument(args);
+
+            assertDoesNotThrow(new KBStatistics(options)::calculate);
+
+            Map<String, Object> record = JsonLinesStatisticsReader.read(out).get(0);
+            String statistics = List.of("features", "relationships", "cross_tree_constraints", "alternative", "or",
+                    "requires", "excludes").stream().map(key -> key + "=" + record.get(key)).toList().toString();
+            if (expected == null) {
+                expected = statistics;
+            } else {
+                assertEquals(expected, statistics, format.toString());
+            }
+        }
+    }
+}